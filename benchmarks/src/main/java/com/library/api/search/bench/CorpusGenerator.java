@@ -0,0 +1,161 @@
+package com.library.api.search.bench;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a reproducible synthetic corpus of text files. Words are drawn from a vocabulary with a
+ * Zipf distribution, as in natural text, and document lengths from a configurable distribution;
+ * the same seed always produces the same files.
+ */
+public class CorpusGenerator {
+
+    private static final String[] ONSETS = {"b", "d", "f", "g", "k", "l", "m", "n", "p", "r", "s", "t", "v", "z"};
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u"};
+    private static final int WORDS_PER_LINE = 12;
+
+    /**
+     * How many words a document has.
+     */
+    public enum DocSize {
+        /**
+         * 50 to 500 words, evenly spread; short notes and snippets.
+         */
+        SMALL {
+            int sample(Random random) {
+                return 50 + random.nextInt(451);
+            }
+        },
+        /**
+         * Log-normal around 1,500 words; typical articles.
+         */
+        MEDIUM {
+            int sample(Random random) {
+                return (int) Math.min(20000, Math.exp(Math.log(1500) + 0.6 * random.nextGaussian()));
+            }
+        },
+        /**
+         * Pareto tail starting at 2,000 words; mostly long with a few very large documents.
+         */
+        LARGE {
+            int sample(Random random) {
+                return (int) Math.min(200000, 2000 / Math.pow(1 - random.nextDouble(), 1 / 1.5));
+            }
+        };
+
+        abstract int sample(Random random);
+    }
+
+    private final int vocabularySize;
+    private final DocSize docSize;
+    private final long seed;
+    private final double[] cumulative;
+
+    /**
+     * @param vocabularySize number of distinct words
+     * @param zipfExponent   skew of the word frequencies; about 1.0 for English text
+     * @param docSize        distribution of document lengths
+     * @param seed           seed for the random source
+     */
+    public CorpusGenerator(int vocabularySize, double zipfExponent, DocSize docSize, long seed) {
+        this.vocabularySize = vocabularySize;
+        this.docSize = docSize;
+        this.seed = seed;
+        this.cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    /**
+     * Writes {@code documents} files named doc-N.txt into {@code dir}.
+     *
+     * @return the total number of bytes written
+     */
+    public long generate(Path dir, int documents) throws IOException {
+        Files.createDirectories(dir);
+        Random random = new Random(seed);
+        long bytes = 0;
+        for (int doc = 0; doc < documents; doc++) {
+            Path file = dir.resolve("doc-" + doc + ".txt");
+            BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            try {
+                int words = docSize.sample(random);
+                for (int i = 0; i < words; i++) {
+                    writer.write(word(nextRank(random)));
+                    writer.write((i % WORDS_PER_LINE == WORDS_PER_LINE - 1) ? '\n' : ' ');
+                }
+            } finally {
+                writer.close();
+            }
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param rank 0 for the most frequent word
+     * @return the word at that frequency rank
+     */
+    public String word(int rank) {
+        StringBuilder sb = new StringBuilder();
+        int n = rank;
+        do {
+            sb.append(ONSETS[n % ONSETS.length]);
+            n /= ONSETS.length;
+            sb.append(VOWELS[n % VOWELS.length]);
+            n /= VOWELS.length;
+        } while (n > 0);
+        return sb.toString();
+    }
+
+    /**
+     * Picks query words from one frequency band. Generated words that are stop words of the
+     * {@link StandardAnalyzer} ("be", "no", "to") are skipped: they are dropped at analysis time,
+     * so a query on them would match nothing and measure nothing.
+     *
+     * @param fraction position in the vocabulary, 0 for the most frequent words and 1 for the rarest
+     * @param count    number of words
+     * @return consecutive words starting at that position, stop words left out
+     */
+    public String[] words(double fraction, int count) {
+        int first = Math.min((int) (fraction * vocabularySize), vocabularySize);
+        List<String> words = new ArrayList<String>(count);
+        for (int rank = first; rank < vocabularySize && words.size() < count; rank++) {
+            addUnlessStopWord(words, words.size(), word(rank));
+        }
+        // near the end of the vocabulary, take the words before the position instead
+        for (int rank = first - 1; rank >= 0 && words.size() < count; rank--) {
+            addUnlessStopWord(words, 0, word(rank));
+        }
+        if (words.size() < count) {
+            throw new IllegalArgumentException("vocabulary has fewer than " + count + " indexable words");
+        }
+        return words.toArray(new String[count]);
+    }
+
+    private static void addUnlessStopWord(List<String> words, int index, String word) {
+        if (!StandardAnalyzer.STOP_WORDS_SET.contains(word)) {
+            words.add(index, word);
+        }
+    }
+
+    private int nextRank(Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (i >= 0) ? i : Math.min(-i - 1, vocabularySize - 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.library.api.search.bench;
+
+import com.library.api.search.lucene.DirectoryType;
+import com.library.api.search.lucene.IndexingProfile;
+import com.library.api.search.lucene.IndexingStats;
+import com.library.api.search.lucene.TextFileIndexer;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest throughput of {@link TextFileIndexer#indexFileOrDirectory(String, int)}, reported in
+ * documents per second, into a fresh heap index per invocation so that disk speed does not
+ * dominate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexingBenchmark {
+
+    static final int DOCUMENTS = 2000;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public CorpusGenerator.DocSize docSize;
+
+    @Param({"10000", "200000"})
+    public int vocabulary;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"DEFAULT", "BULK_LOAD"})
+    public IndexingProfile profile;
+
+    private Path corpus;
+
+    @Setup(Level.Trial)
+    public void createCorpus() throws IOException {
+        corpus = Files.createTempDirectory("bench-corpus");
+        new CorpusGenerator(vocabulary, 1.0, docSize, 42).generate(corpus, DOCUMENTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        FileUtils.deleteDirectory(corpus.toFile());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public IndexingStats index() throws IOException {
+        TextFileIndexer indexer = new TextFileIndexer(DirectoryType.HEAP.open((String) null), profile);
+        try {
+            return indexer.indexFileOrDirectory(corpus.toString(), threads);
+        } finally {
+            indexer.closeIndex();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.library.api.search.bench;
+
+import com.library.api.search.lucene.DirectoryType;
+import com.library.api.search.lucene.HighlightResult;
+import com.library.api.search.lucene.KeywordInContext;
+import com.library.api.search.lucene.SearchHits;
+import com.library.api.search.lucene.TextFileIndexer;
+import com.library.api.search.lucene.TextFileSearcher;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.store.BaseDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of {@link TextFileSearcher}. Sample-time mode records the distribution of single
+ * calls, so the results include p50/p90/p99 and not only a mean. Queries cycle through words of
+ * one frequency band: frequent words match many documents, rare ones few.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    static final int DOCUMENTS = 5000;
+    static final int HIGHLIGHT_HITS = 10;
+    private static final int QUERY_WORDS = 64;
+
+    @Param({"SMALL", "MEDIUM"})
+    public CorpusGenerator.DocSize docSize;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    /**
+     * Position of the query words in the vocabulary, 0 for the most frequent.
+     */
+    @Param({"0.001", "0.05", "0.5"})
+    public double band;
+
+    private Path corpus;
+    private BaseDirectory directory;
+    private TextFileSearcher searcher;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildIndex() throws IOException {
+        corpus = Files.createTempDirectory("bench-corpus");
+        CorpusGenerator generator = new CorpusGenerator(vocabulary, 1.0, docSize, 42);
+        generator.generate(corpus, DOCUMENTS);
+        queries = generator.words(band, QUERY_WORDS);
+
+        directory = DirectoryType.HEAP.open((String) null);
+        TextFileIndexer indexer = new TextFileIndexer(directory);
+        indexer.indexFileOrDirectory(corpus.toString());
+        indexer.closeIndex();
+        searcher = new TextFileSearcher(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        searcher.close();
+        directory.close();
+        FileUtils.deleteDirectory(corpus.toFile());
+    }
+
+    private String nextQuery() {
+        String query = queries[next];
+        next = (next + 1) % queries.length;
+        return query;
+    }
+
+    @Benchmark
+    public SearchHits search() {
+        return searcher.search(nextQuery(), 10);
+    }
+
+    /**
+     * Reported per highlighted hit; frequent-word bands always fill all {@value #HIGHLIGHT_HITS}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(HIGHLIGHT_HITS)
+    public List<HighlightResult> highlightSearch() {
+        return searcher.highlightSearch(nextQuery(), HIGHLIGHT_HITS, 3, 100);
+    }
+
+    @Benchmark
+    public List<KeywordInContext> searchSpan() throws IOException {
+        return searcher.searchSpan(nextQuery(), 20, 5);
+    }
+}
@@ -0,0 +1,86 @@
+package com.library.api.search.engine.google;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Client#fromJson} on canned responses of eight results each. Run with the GC
+ * profiler (on by default through BenchmarkMain) to see bytes allocated per decode; the
+ * reflective variant is the baseline the client's adapters are compared against. Lives in the
+ * client's package because fromJson is protected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonDecodeBenchmark {
+
+    @Param({"web", "news", "images"})
+    public String payload;
+
+    private Client client;
+    private Gson reflective;
+    private String json;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        InputStream in = getClass().getResourceAsStream("/payloads/" + payload + ".json");
+        try {
+            json = IOUtils.toString(in, StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+        client = new Client();
+        reflective = new Gson();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        client.close();
+    }
+
+    @Benchmark
+    public Response decodeString() {
+        return client.fromJson(json);
+    }
+
+    @Benchmark
+    public Response decodeStream() throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+        try {
+            return client.fromJson(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public Response decodeReflective() {
+        return reflective.fromJson(json, Response.class);
+    }
+}
@@ -0,0 +1,56 @@
+package com.library.api.search.engine.google;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-endpoint circuit breaker. After {@code failureThreshold} consecutive transient failures the
+ * circuit opens and requests fail immediately with {@link CircuitOpenException} instead of
+ * waiting on a struggling service. Once {@code openMillis} have passed a single trial request is
+ * let through: if it succeeds the circuit closes, otherwise it stays open for another period.
+ */
+class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private int failures;
+    private boolean open;
+    private boolean trialInFlight;
+    private long openedAt;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    synchronized boolean allowRequest() {
+        if (!open) {
+            return true;
+        }
+        if (trialInFlight || System.nanoTime() - openedAt < openNanos) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        failures = 0;
+        open = false;
+        trialInFlight = false;
+    }
+
+    /**
+     * Gives up a permitted request without an outcome, so it does not hold the trial slot.
+     */
+    synchronized void onAbandoned() {
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        if (open || ++failures >= failureThreshold) {
+            open = true;
+            trialInFlight = false;
+            openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.library.api.search.engine.google;
+
+/**
+ * Thrown without contacting the service when its circuit breaker is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String endpoint) {
+        super("circuit open for " + endpoint);
+    }
+}
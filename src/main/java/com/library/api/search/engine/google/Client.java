@@ -1,21 +1,44 @@
 package com.library.api.search.engine.google;
 
+import com.library.api.search.metrics.Gauge;
+import com.library.api.search.metrics.MetricsRegistry;
+import com.library.api.search.metrics.NoopMetricsRegistry;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.client.params.AllClientPNames;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -23,9 +46,27 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * http://code.google.com/apis/ajaxsearch/documentation/#fonje
@@ -55,104 +96,690 @@ import java.util.Map;
  */
 public class Client {
 
-    private HttpClient httpClient;
-    private static final String NEWS_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/news";
-    private static final String LOCAL_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/local";
-    private static final String WEB_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/web";
-    private static final String BOOK_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/books";
-    private static final String IMAGE_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/images";
-    private static final String VIDEO_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/videos";
-    private static final String BLOG_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/blogs";
+    private static final Logger LOG = LoggerFactory.getLogger(Client.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
-    private boolean compressionEnabled = false;
+    //
+    //  this user agent string has been crafted this way
+    //  so that Google's service will return gzip compressed responses
+    //  when Accept-Encoding: gzip is present in the request.
+    //
+    private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (Java) Gecko/20081007 gsearch-java-client";
+
+    private static final Function<Response, Response> SAME = new Function<Response, Response>() {
+        public Response apply(Response r) {
+            return r;
+        }
+    };
+
+    private static final Function<Response, List<Result>> RESULTS = new Function<Response, List<Result>>() {
+        public List<Result> apply(Response r) {
+            return r.getResponseData().getResults();
+        }
+    };
+
+    private final HttpClient httpClient;
+    private final String userAgent;
+    private final RequestConfig requestConfig;
+    private final CredentialsProvider credentialsProvider;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final boolean compressionEnabled;
+    private final boolean retainJson;
+    private final ResponseCache responseCache;
+    private final RateLimiter rateLimiter;
+    private final RetryPolicy retryPolicy;
+    private final int breakerFailureThreshold;
+    private final long breakerOpenMillis;
+    private final long hedgeDelayMillis;
+    private final MetricsRegistry metrics;
+    private final ConcurrentMap<String, CompletableFuture<Response>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<Response>>();
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private CloseableHttpAsyncClient asyncClient;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService decoder;
+    static final String NEWS_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/news";
+    static final String LOCAL_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/local";
+    static final String WEB_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/web";
+    static final String BOOK_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/books";
+    static final String IMAGE_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/images";
+    static final String VIDEO_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/videos";
+    static final String BLOG_SEARCH_ENDPOINT = "http://ajax.googleapis.com/ajax/services/search/blogs";
+
+    /**
+     * Gson is thread-safe once built, and building it is far more expensive than a decode, so all
+     * responses are decoded with this one instance.
+     */
+    private static final Gson GSON = createGson();
 
     static public Gson createGson() {
         GsonBuilder builder = new GsonBuilder();
         // builder.setFieldNamingPolicy(namingConvention)
-        // builder.registerTypeAdapter(type, typeAdapter);
+        ResponseAdapters.register(builder);
         Gson gson = builder.create();
         return gson;
     }
 
+    static Gson sharedGson() {
+        return GSON;
+    }
+
+    /**
+     * Creates a client with the default configuration; see {@link Builder}.
+     */
     public Client() {
-        this(new DefaultHttpClient());
+        this(new Builder(), null);
     }
 
+    /**
+     * Wraps an existing HTTP client. The default user agent and timeouts are set on each request
+     * it sends, so the client itself is left as configured.
+     */
     public Client(HttpClient hClient) {
-        this.httpClient = hClient;
-
-        //
-        //  this user agent string has been crafted this way
-        //  so that Google's service will return gzip compressed responses
-        //  when Accept-Encoding: gzip is present in the request.
-        //
-        setUserAgent("Mozilla/5.0 (Java) Gecko/20081007 gsearch-java-client");
-        setConnectionTimeout(10 * 1000);
-        setSocketTimeout(25 * 1000);
+        this(new Builder(), hClient);
     }
 
-    public void setUserAgent(String ua) {
-        this.httpClient.getParams().setParameter(AllClientPNames.USER_AGENT, ua);
+    private Client(Builder builder, HttpClient hClient) {
+        this.userAgent = builder.userAgent;
+        this.maxConnections = builder.maxConnections;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.compressionEnabled = builder.compressionEnabled;
+        this.retainJson = builder.retainJson;
+        this.responseCache = builder.responseCache;
+        this.rateLimiter = (builder.permitsPerSecond > 0)
+                ? new RateLimiter(builder.permitsPerSecond, builder.burst) : null;
+        this.retryPolicy = new RetryPolicy(builder.maxAttempts, builder.baseDelayMillis, builder.maxDelayMillis);
+        this.breakerFailureThreshold = builder.breakerFailureThreshold;
+        this.breakerOpenMillis = builder.breakerOpenMillis;
+        this.hedgeDelayMillis = builder.hedgeDelayMillis;
+        this.metrics = (builder.metrics == null) ? NoopMetricsRegistry.INSTANCE : builder.metrics;
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(builder.connectionTimeout)
+                .setSocketTimeout(builder.socketTimeout)
+                .setProxy(builder.proxy)
+                .build();
+        this.credentialsProvider = new BasicCredentialsProvider();
+        if (builder.proxy != null && builder.proxyCredentials != null) {
+            credentialsProvider.setCredentials(new AuthScope(builder.proxy), builder.proxyCredentials);
+        }
+
+        if (hClient == null) {
+            this.httpClient = createHttpClient();
+        } else {
+            this.httpClient = hClient;
+        }
     }
 
-    public void setConnectionTimeout(int milliseconds) {
-        httpClient.getParams().setIntParameter(AllClientPNames.CONNECTION_TIMEOUT, milliseconds);
+    public static Builder builder() {
+        return new Builder();
     }
 
-    public void setSocketTimeout(int milliseconds) {
-        httpClient.getParams().setIntParameter(AllClientPNames.SO_TIMEOUT, milliseconds);
+    /**
+     * Pooled client so that concurrent requests reuse kept-alive connections instead of
+     * serializing on a single one. Everything is configured here, once; nothing is changed on
+     * the request path, so a single client can be shared between threads.
+     */
+    private CloseableHttpClient createHttpClient() {
+        // the search endpoints are plain http; https keeps the stock factory so proxy tunnels still work
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", new TimedConnectionSocketFactory(PlainConnectionSocketFactory.getSocketFactory(), metrics))
+                        .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                        .build());
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        metrics.registerGauge("google.connections.leased", new Gauge() {
+            public long getValue() {
+                return connectionManager.getTotalStats().getLeased();
+            }
+        });
+        metrics.registerGauge("google.connections.available", new Gauge() {
+            public long getValue() {
+                return connectionManager.getTotalStats().getAvailable();
+            }
+        });
+        metrics.registerGauge("google.connections.pending", new Gauge() {
+            public long getValue() {
+                return connectionManager.getTotalStats().getPending();
+            }
+        });
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setUserAgent(userAgent)
+                .setDefaultRequestConfig(requestConfig)
+                .setDefaultCredentialsProvider(credentialsProvider)
+                // withResilience owns retries; the stock handler would resend inside each attempt
+                .disableAutomaticRetries();
+        if (!compressionEnabled) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
     }
 
+    /**
+     * Sends a search request. Concurrent calls for the same endpoint and parameters are coalesced:
+     * the first caller sends the request and the others wait for its response instead of sending
+     * their own.
+     */
     protected Response sendSearchRequest(String url, Map<String, String> params) {
 
         if (params.get("v") == null) {
             params.put("v", "1.0");
         }
 
-        String json = sendHttpRequest("GET", url, params);
-        Response r = fromJson(json);
-        r.setJson(json);
-        return r;
+        String key = cacheKey(url, params);
+        if (responseCache != null) {
+            Response cached = responseCache.get(url, key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CompletableFuture<Response> flight = new CompletableFuture<Response>();
+        CompletableFuture<Response> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            return await(leader);
+        }
+
+        try {
+            Response r = executeSearchRequest(url, url + buildQueryString(params));
+            land(url, key, flight, r, null);
+            return r;
+        } catch (RuntimeException ex) {
+            land(url, key, flight, null, ex);
+            throw ex;
+        }
     }
 
-    protected Response fromJson(String json) {
-        Gson gson = createGson();
-        Response r = gson.fromJson(json, Response.class);
-        return r;
+    /**
+     * Sends a request through the resilience layer; with hedging enabled the blocking call waits
+     * on the non-blocking path, which is where hedges are sent from.
+     */
+    private Response executeSearchRequest(String endpoint, final String requestUrl) {
+        LOG.debug("GET {}", requestUrl);
+
+        if (hedgeDelayMillis > 0) {
+            return await(executeSearchRequestAsync(endpoint, requestUrl));
+        }
+        return withResilience(endpoint, new Callable<Response>() {
+            public Response call() throws Exception {
+                long start = System.nanoTime();
+                HttpResponse response = getHttpClient().execute(newGet(requestUrl));
+                String service = serviceOf(requestUrl);
+                metrics.recordTime("google.http.response." + service, System.nanoTime() - start);
+                return readResponse(response, service);
+            }
+        });
     }
 
-    protected String sendHttpRequest(String httpMethod, String url, Map<String, String> params) {
-        HttpClient c = getHttpClient();
-        HttpUriRequest request = null;
+    /**
+     * Runs a blocking request under the rate limiter and the endpoint's circuit breaker, retrying
+     * transient failures with jittered exponential backoff.
+     */
+    private <T> T withResilience(String endpoint, Callable<T> request) {
+        CircuitBreaker breaker = breakerFor(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.allowRequest()) {
+                throw new CircuitOpenException(endpoint);
+            }
+            try {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+                T value = request.call();
+                breaker.onSuccess();
+                return value;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                breaker.onAbandoned();
+                throw new RuntimeException(ex);
+            } catch (Exception ex) {
+                record(breaker, ex);
+                if (!retryPolicy.shouldRetry(attempt, ex)) {
+                    if (ex instanceof RuntimeException) {
+                        throw (RuntimeException) ex;
+                    }
+                    throw new RuntimeException(ex);
+                }
+            }
+            try {
+                Thread.sleep(retryPolicy.backoffMillis(attempt));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    /**
+     * Only transient failures count against the endpoint; any other answer shows it is up.
+     */
+    private static void record(CircuitBreaker breaker, Throwable failure) {
+        if (RetryPolicy.isRetryable(failure)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    private CircuitBreaker breakerFor(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(breakerFailureThreshold, breakerOpenMillis);
+            breaker = breakers.putIfAbsent(endpoint, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Sends a search request without blocking the calling thread. Requests run on a non-blocking
+     * I/O client with its own connection pool, so many can be in flight without a thread each.
+     * Concurrent requests for the same endpoint and parameters, blocking or not, share one
+     * round trip.
+     *
+     * @return a future completed with the parsed response, or exceptionally on failure
+     */
+    protected CompletableFuture<Response> sendSearchRequestAsync(final String url, Map<String, String> params) {
+
+        if (params.get("v") == null) {
+            params.put("v", "1.0");
+        }
+
+        final String key = cacheKey(url, params);
+        final String requestUrl = url + buildQueryString(params);
+        if (responseCache == null) {
+            return fetchAsync(url, key, requestUrl);
+        }
+        return responseCache.getAsync(url, key).thenCompose(new Function<Response, CompletableFuture<Response>>() {
+            public CompletableFuture<Response> apply(Response cached) {
+                return (cached != null) ? CompletableFuture.completedFuture(cached) : fetchAsync(url, key, requestUrl);
+            }
+        });
+    }
+
+    /**
+     * Joins the in-flight request for the key, or sends a new one.
+     */
+    private CompletableFuture<Response> fetchAsync(final String url, final String key, String requestUrl) {
+        final CompletableFuture<Response> flight = new CompletableFuture<Response>();
+        CompletableFuture<Response> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            // hand out a dependent future so one caller cancelling does not affect the others
+            return leader.thenApply(SAME);
+        }
+
+        executeSearchRequestAsync(url, requestUrl).whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable failure) {
+                land(url, key, flight, r, failure);
+            }
+        });
+        return flight.thenApply(SAME);
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #withResilience}: rate limit waits and retry backoff are
+     * scheduled rather than slept, so no thread is held while a request waits its turn.
+     */
+    private CompletableFuture<Response> executeSearchRequestAsync(String endpoint, String requestUrl) {
+        CompletableFuture<Response> result = new CompletableFuture<Response>();
+        attemptAsync(endpoint, requestUrl, 1, result);
+        return result;
+    }
 
-        if ("GET".equalsIgnoreCase(httpMethod)) {
+    private void attemptAsync(final String endpoint, final String requestUrl, final int attempt,
+                              final CompletableFuture<Response> result) {
+        final CircuitBreaker breaker = breakerFor(endpoint);
+        if (!breaker.allowRequest()) {
+            result.completeExceptionally(new CircuitOpenException(endpoint));
+            return;
+        }
 
-            String queryString = buildQueryString(params);
-            url = url + queryString;
-            System.out.println(url);
-            request = new HttpGet(url);
+        Runnable send = new Runnable() {
+            public void run() {
+                sendHedged(requestUrl).whenComplete(new BiConsumer<Response, Throwable>() {
+                    public void accept(Response r, Throwable failure) {
+                        if (failure == null) {
+                            breaker.onSuccess();
+                            result.complete(r);
+                            return;
+                        }
+                        record(breaker, failure);
+                        if (!retryPolicy.shouldRetry(attempt, failure)) {
+                            result.completeExceptionally(failure);
+                            return;
+                        }
+                        getScheduler().schedule(new Runnable() {
+                            public void run() {
+                                attemptAsync(endpoint, requestUrl, attempt + 1, result);
+                            }
+                        }, retryPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS);
+                    }
+                });
+            }
+        };
+
+        long wait = (rateLimiter == null) ? 0 : rateLimiter.reserve();
+        if (wait > 0) {
+            getScheduler().schedule(send, wait, TimeUnit.NANOSECONDS);
         } else {
-            throw new RuntimeException("unsupported method: " + httpMethod);
+            send.run();
+        }
+    }
+
+    /**
+     * Sends the request and, if no answer has arrived after the hedge delay, sends it once more;
+     * the first successful answer wins and the other request is cancelled. The hedge is only sent
+     * when the rate limiter has a permit to spare, so hedging never adds to a backlog.
+     */
+    private CompletableFuture<Response> sendHedged(final String requestUrl) {
+        if (hedgeDelayMillis <= 0) {
+            return sendAsync(requestUrl);
+        }
+
+        final CompletableFuture<Response> winner = new CompletableFuture<Response>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        race(winner, pending, sendAsync(requestUrl));
+        getScheduler().schedule(new Runnable() {
+            public void run() {
+                if (!winner.isDone() && (rateLimiter == null || rateLimiter.tryAcquire())) {
+                    pending.incrementAndGet();
+                    race(winner, pending, sendAsync(requestUrl));
+                }
+            }
+        }, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        return winner;
+    }
+
+    private static void race(final CompletableFuture<Response> winner, final AtomicInteger pending,
+                             final CompletableFuture<Response> attempt) {
+        attempt.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable failure) {
+                if (failure == null) {
+                    winner.complete(r);
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(failure);
+                }
+            }
+        });
+        winner.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable failure) {
+                attempt.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * @return a future for a single request; cancelling it aborts the exchange
+     */
+    private CompletableFuture<Response> sendAsync(String requestUrl) {
+        final CompletableFuture<Response> future = new CompletableFuture<Response>();
+        final String service = serviceOf(requestUrl);
+        final long start = System.nanoTime();
+        final Future<HttpResponse> exchange = getAsyncClient().execute(new HttpGet(requestUrl), new FutureCallback<HttpResponse>() {
+            public void completed(final HttpResponse response) {
+                metrics.recordTime("google.http.response." + service, System.nanoTime() - start);
+                // decoding a large body on the I/O dispatcher would stall every other exchange on it
+                try {
+                    getDecoder().execute(new Runnable() {
+                        public void run() {
+                            try {
+                                future.complete(readResponse(response, service));
+                            } catch (Exception ex) {
+                                future.completeExceptionally(ex);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+
+            public void failed(Exception ex) {
+                future.completeExceptionally(ex);
+            }
+
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable failure) {
+                if (future.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Finishes an in-flight request: caches the response, stops routing new callers to this
+     * flight and then releases everyone waiting on it.
+     */
+    private void land(String endpoint, String key, CompletableFuture<Response> flight, Response r, Throwable failure) {
+        if (failure == null && responseCache != null) {
+            responseCache.put(endpoint, key, r);
+        }
+        inFlight.remove(key, flight);
+        if (failure == null) {
+            flight.complete(r);
+        } else {
+            flight.completeExceptionally(failure);
+        }
+    }
+
+    static Response await(CompletableFuture<Response> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
         }
+    }
+
+    protected Response fromJson(String json) {
+        Response r = GSON.fromJson(json, Response.class);
+        return r;
+    }
 
-        HttpResponse response = null;
-        HttpEntity entity = null;
+    protected Response fromJson(JsonReader reader) {
+        Response r = GSON.fromJson(reader, Response.class);
+        return r;
+    }
 
+    /**
+     * Decodes a search response straight from the entity stream, so the body is never held as a
+     * String next to the parsed objects. Only when {@link Builder#retainJson(boolean)} is enabled is
+     * the body read into a String first and kept in {@link Response#getJson()}. The decode time
+     * recorded for the service therefore includes reading the body off the connection.
+     */
+    private Response readResponse(HttpResponse response, String service) throws IOException {
+        HttpEntity entity = response.getEntity();
         try {
-            response = c.execute(request);
-            int statusCode = response.getStatusLine().getStatusCode();
+            checkStatus(response, entity);
+
+            long start = System.nanoTime();
+            if (retainJson) {
+                String json = EntityUtils.toString(entity, DEFAULT_CHARSET);
+                Response r = fromJson(json);
+                r.setJson(json);
+                metrics.recordTime("google.json.decode." + service, System.nanoTime() - start);
+                return r;
+            }
 
-            if (statusCode != HttpStatus.SC_OK) {
-                throw new RuntimeException("unexpected HTTP response status code = " + statusCode);
+            Charset charset = ContentType.getOrDefault(entity).getCharset();
+            JsonReader reader = new JsonReader(new InputStreamReader(entity.getContent(),
+                    (charset == null) ? DEFAULT_CHARSET : charset));
+            try {
+                Response r = fromJson(reader);
+                metrics.recordTime("google.json.decode." + service, System.nanoTime() - start);
+                return r;
+            } finally {
+                reader.close();
             }
+        } finally {
+            EntityUtils.consume(entity);
+        }
+    }
+
+    private static void checkStatus(HttpResponse response, HttpEntity entity) {
+        int statusCode = response.getStatusLine().getStatusCode();
+
+        if (statusCode != HttpStatus.SC_OK) {
+            throw new UnexpectedStatusException(statusCode);
+        }
+        if (entity == null) {
+            throw new RuntimeException("response body was empty");
+        }
+    }
+
+    protected String sendHttpRequest(String httpMethod, String url, Map<String, String> params) {
+        final HttpClient c = getHttpClient();
+
+        if (!"GET".equalsIgnoreCase(httpMethod)) {
+            throw new RuntimeException("unsupported method: " + httpMethod);
+        }
+        final String requestUrl = url + buildQueryString(params);
+        LOG.debug("GET {}", requestUrl);
 
-            entity = response.getEntity();
+        return withResilience(endpointOf(requestUrl), new Callable<String>() {
+            public String call() throws Exception {
+                // a fresh request per attempt; an executed or aborted one must not be resent
+                return readEntity(c.execute(newGet(requestUrl)));
+            }
+        });
+    }
+
+    /**
+     * A GET carrying the configured timeouts, proxy and user agent, so they also apply when the
+     * client wraps an HTTP client it did not build.
+     */
+    private HttpGet newGet(String url) {
+        HttpGet get = new HttpGet(url);
+        get.setConfig(requestConfig);
+        get.setHeader(HttpHeaders.USER_AGENT, userAgent);
+        return get;
+    }
+
+    private static String endpointOf(String url) {
+        int query = url.indexOf('?');
+        return (query < 0) ? url : url.substring(0, query);
+    }
+
+    /**
+     * @return the last path segment of the endpoint, e.g. "web"; used to name per-service metrics
+     */
+    private static String serviceOf(String url) {
+        String endpoint = endpointOf(url);
+        return endpoint.substring(endpoint.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Reads the body of a 200 response. The entity is always fully consumed, also on error status,
+     * so the connection goes back to the pool for reuse.
+     */
+    private String readEntity(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        try {
+            checkStatus(response, entity);
             return EntityUtils.toString(entity);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
         } finally {
-            // todo :
+            EntityUtils.consume(entity);
+        }
+    }
+
+    /**
+     * Lazily starts the non-blocking client, so callers that only use the blocking API do not pay
+     * for its I/O threads.
+     */
+    protected synchronized CloseableHttpAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+            if (compressionEnabled) {
+                builder.addInterceptorLast(new RequestAcceptEncoding());
+                builder.addInterceptorLast(new ResponseContentEncoding());
+            }
+            asyncClient = builder
+                    .setMaxConnTotal(maxConnections)
+                    .setMaxConnPerRoute(maxConnectionsPerRoute)
+                    .setUserAgent(userAgent)
+                    .setDefaultRequestConfig(requestConfig)
+                    .setDefaultCredentialsProvider(credentialsProvider)
+                    .build();
+            asyncClient.start();
+        }
+        return asyncClient;
+    }
+
+    /**
+     * Lazily starts the timer thread used for backoff, rate limit waits and hedges on the
+     * non-blocking path.
+     */
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "google-client-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Lazily starts the threads that decode responses of the non-blocking client, one per
+     * processor.
+     */
+    private synchronized ExecutorService getDecoder() {
+        if (decoder == null) {
+            decoder = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "google-client-decoder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return decoder;
+    }
+
+    /**
+     * Releases pooled connections and stops the non-blocking client.
+     */
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (decoder != null) {
+            decoder.shutdownNow();
+            decoder = null;
+        }
+        if (asyncClient != null) {
+            asyncClient.close();
+            asyncClient = null;
         }
+        if (httpClient instanceof Closeable) {
+            ((Closeable) httpClient).close();
+        }
+    }
+
+    /**
+     * @return the endpoint with its parameters in sorted order, so that equivalent requests share
+     * a cache entry regardless of the order the parameters were added in
+     */
+    private String cacheKey(String url, Map<String, String> params) {
+        return url + buildQueryString(new TreeMap<String, String>(params));
     }
 
     private String buildQueryString(Map<String, String> params) {
@@ -192,28 +819,6 @@ public class Client {
     }
 
     protected HttpClient getHttpClient() {
-
-        if (this.httpClient instanceof DefaultHttpClient) {
-            DefaultHttpClient defaultClient = (DefaultHttpClient) httpClient;
-
-            HttpHost proxy = new HttpHost("proxy.server.com", 8080, "http");
-
-            defaultClient.getCredentialsProvider().setCredentials(
-                    new AuthScope("proxy.server.com", 8080),
-                    new UsernamePasswordCredentials("user01", "password")
-            );
-            defaultClient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
-/*
-            defaultClient.removeRequestInterceptorByClass(GzipRequestInterceptor.class);
-            defaultClient.removeResponseInterceptorByClass(GzipResponseInterceptor.class);
-
-            if (this.isCompressionEnabled()) {
-                defaultClient.addRequestInterceptor(GzipRequestInterceptor.getInstance());
-                defaultClient.addResponseInterceptor(GzipResponseInterceptor.getInstance());
-            }
-*/
-        }
-
         return this.httpClient;
     }
 
@@ -233,6 +838,15 @@ public class Client {
      */
 
     public List<Result> searchNews(String query, String location, NewsTopic topic) {
+        Response r = sendNewsSearchRequest(newsParams(query, location, topic));
+        return r.getResponseData().getResults();
+    }
+
+    public CompletableFuture<List<Result>> searchNewsAsync(String query, String location, NewsTopic topic) {
+        return sendSearchRequestAsync(NEWS_SEARCH_ENDPOINT, newsParams(query, location, topic)).thenApply(RESULTS);
+    }
+
+    static Map<String, String> newsParams(String query, String location, NewsTopic topic) {
         Map<String, String> params = new LinkedHashMap<String, String>();
 
         if ((query != null) && (query.trim().length() > 0)) {
@@ -246,9 +860,13 @@ public class Client {
         if (topic != null) {
             params.put("topic", topic.getCode());
         }
+        return params;
+    }
 
-        Response r = sendNewsSearchRequest(params);
-        return r.getResponseData().getResults();
+    static Map<String, String> queryParams(String query) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("q", query);
+        return params;
     }
 
 
@@ -276,8 +894,8 @@ public class Client {
         return compressionEnabled;
     }
 
-    public void setCompressionEnabled(boolean b) {
-        this.compressionEnabled = b;
+    public boolean isRetainJson() {
+        return retainJson;
     }
 
     /**
@@ -291,15 +909,18 @@ public class Client {
 
     public byte[] getBytesFromUrl(String url) {
         try {
-            HttpGet get = new HttpGet(url);
-            HttpResponse response = this.getHttpClient().execute(get);
+            HttpResponse response = this.getHttpClient().execute(newGet(url));
             HttpEntity entity = response.getEntity();
 
             if (entity == null) {
                 throw new RuntimeException("response body was empty");
             }
 
-            return EntityUtils.toByteArray(entity);
+            try {
+                return EntityUtils.toByteArray(entity);
+            } finally {
+                EntityUtils.consume(entity);
+            }
         } catch (RuntimeException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -309,15 +930,18 @@ public class Client {
 
     public String get(String url) {
         try {
-            HttpGet get = new HttpGet(url);
-            HttpResponse response = this.getHttpClient().execute(get);
+            HttpResponse response = this.getHttpClient().execute(newGet(url));
             HttpEntity entity = response.getEntity();
 
             if (entity == null) {
                 throw new RuntimeException("response body was empty");
             }
 
-            return EntityUtils.toString(entity);
+            try {
+                return EntityUtils.toString(entity);
+            } finally {
+                EntityUtils.consume(entity);
+            }
         } catch (RuntimeException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -325,32 +949,84 @@ public class Client {
         }
     }
 
+    /**
+     * @return the results of a single page, for searches beyond the first page
+     */
+    public List<Result> search(PageRequest page) {
+        return sendSearchRequest(page.getEndpoint(), page.toParams()).getResponseData().getResults();
+    }
+
+    public CompletableFuture<List<Result>> searchAsync(PageRequest page) {
+        return sendSearchRequestAsync(page.getEndpoint(), page.toParams()).thenApply(RESULTS);
+    }
+
+    /**
+     * Fetches many pages with up to {@code parallelism} requests in flight, so the batch takes
+     * about as long as its slowest window of requests rather than one round trip per page.
+     *
+     * @return the results of all pages in the order the pages were given; results of a page are
+     * available as soon as it and every page before it have arrived. Close it to stop early.
+     */
+    public PageIterator searchPages(List<PageRequest> pages, int parallelism) {
+        return new PageIterator(this, pages, parallelism);
+    }
+
+    /**
+     * @return the first {@code pagesPerQuery} full pages of each query's web results, query by query
+     */
+    public PageIterator searchWebPages(List<String> queries, int pagesPerQuery, int parallelism) {
+        List<PageRequest> pages = new ArrayList<PageRequest>();
+        for (String query : queries) {
+            pages.addAll(PageRequest.web(query).pages(pagesPerQuery, PageRequest.MAX_PAGE_SIZE));
+        }
+        return searchPages(pages, parallelism);
+    }
+
     public List<Result> searchNews(NewsTopic topic) {
         return searchNews(null, null, topic);
     }
 
+    public CompletableFuture<List<Result>> searchNewsAsync(NewsTopic topic) {
+        return searchNewsAsync(null, null, topic);
+    }
+
     public List<Result> searchWeb(String query) {
-        Map<String, String> params = new LinkedHashMap<String, String>();
-        params.put("q", query);
-        Response r = sendWebSearchRequest(params);
+        Response r = sendWebSearchRequest(queryParams(query));
         return r.getResponseData().getResults();
     }
 
+    public CompletableFuture<List<Result>> searchWebAsync(String query) {
+        return sendSearchRequestAsync(WEB_SEARCH_ENDPOINT, queryParams(query)).thenApply(RESULTS);
+    }
+
     public List<Result> searchBooks(String query) {
-        Map<String, String> params = new LinkedHashMap<String, String>();
-        params.put("q", query);
-        Response r = sendBookSearchRequest(params);
+        Response r = sendBookSearchRequest(queryParams(query));
         return r.getResponseData().getResults();
     }
 
+    public CompletableFuture<List<Result>> searchBooksAsync(String query) {
+        return sendSearchRequestAsync(BOOK_SEARCH_ENDPOINT, queryParams(query)).thenApply(RESULTS);
+    }
+
     public List<Result> searchImages(String query) {
-        Map<String, String> params = new LinkedHashMap<String, String>();
-        params.put("q", query);
-        Response r = sendImageSearchRequest(params);
+        Response r = sendImageSearchRequest(queryParams(query));
         return r.getResponseData().getResults();
     }
 
+    public CompletableFuture<List<Result>> searchImagesAsync(String query) {
+        return sendSearchRequestAsync(IMAGE_SEARCH_ENDPOINT, queryParams(query)).thenApply(RESULTS);
+    }
+
     public List<Result> searchLocal(double lat, double lon, String query) {
+        Response r = sendLocalSearchRequest(localParams(lat, lon, query));
+        return r.getResponseData().getResults();
+    }
+
+    public CompletableFuture<List<Result>> searchLocalAsync(double lat, double lon, String query) {
+        return sendSearchRequestAsync(LOCAL_SEARCH_ENDPOINT, localParams(lat, lon, query)).thenApply(RESULTS);
+    }
+
+    static Map<String, String> localParams(double lat, double lon, String query) {
         Map<String, String> params = new LinkedHashMap<String, String>();
         params.put("sll", lat + "," + lon);
         params.put("mrt", "localonly");
@@ -358,12 +1034,19 @@ public class Client {
         if (query != null) {
             params.put("q", query);
         }
+        return params;
+    }
 
-        Response r = sendLocalSearchRequest(params);
+    public List<Result> searchVideos(String query, OrderBy order) {
+        Response r = sendVideoSearchRequest(videoParams(query, order));
         return r.getResponseData().getResults();
     }
 
-    public List<Result> searchVideos(String query, OrderBy order) {
+    public CompletableFuture<List<Result>> searchVideosAsync(String query, OrderBy order) {
+        return sendSearchRequestAsync(VIDEO_SEARCH_ENDPOINT, videoParams(query, order)).thenApply(RESULTS);
+    }
+
+    static Map<String, String> videoParams(String query, OrderBy order) {
         Map<String, String> params = new LinkedHashMap<String, String>();
 
         params.put("q", query);
@@ -373,8 +1056,7 @@ public class Client {
         }
 
         params.put("orderBy", order.getValue());
-        Response r = sendVideoSearchRequest(params);
-        return r.getResponseData().getResults();
+        return params;
     }
 
     protected Response sendVideoSearchRequest(Map<String, String> params) {
@@ -382,12 +1064,14 @@ public class Client {
     }
 
     public List<Result> searchBlogs(String query) {
-        Map<String, String> params = new LinkedHashMap<String, String>();
-        params.put("q", query);
-        Response r = sendBlogSearchRequest(params);
+        Response r = sendBlogSearchRequest(queryParams(query));
         return r.getResponseData().getResults();
     }
 
+    public CompletableFuture<List<Result>> searchBlogsAsync(String query) {
+        return sendSearchRequestAsync(BLOG_SEARCH_ENDPOINT, queryParams(query)).thenApply(RESULTS);
+    }
+
     protected Response sendBlogSearchRequest(Map<String, String> params) {
         return sendSearchRequest(BLOG_SEARCH_ENDPOINT, params);
     }
@@ -419,4 +1103,142 @@ public class Client {
             System.out.println(result);
         }
     }
+
+    /**
+     * Immutable configuration for a {@link Client}. All settings are applied when the client is
+     * built.
+     */
+    public static class Builder {
+        private String userAgent = DEFAULT_USER_AGENT;
+        private int connectionTimeout = 10 * 1000;
+        private int socketTimeout = 25 * 1000;
+        private HttpHost proxy;
+        private Credentials proxyCredentials;
+        private boolean compressionEnabled = false;
+        private boolean retainJson = false;
+        private int maxConnections = 200;
+        private int maxConnectionsPerRoute = 50;
+        private ResponseCache responseCache;
+        private double permitsPerSecond = 0;
+        private int burst = 1;
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 100;
+        private long maxDelayMillis = 2 * 1000;
+        private int breakerFailureThreshold = 5;
+        private long breakerOpenMillis = 30 * 1000;
+        private long hedgeDelayMillis = 0;
+        private MetricsRegistry metrics;
+
+        public Builder userAgent(String ua) {
+            this.userAgent = ua;
+            return this;
+        }
+
+        public Builder connectionTimeout(int milliseconds) {
+            this.connectionTimeout = milliseconds;
+            return this;
+        }
+
+        public Builder socketTimeout(int milliseconds) {
+            this.socketTimeout = milliseconds;
+            return this;
+        }
+
+        public Builder proxy(String host, int port) {
+            this.proxy = new HttpHost(host, port, "http");
+            return this;
+        }
+
+        public Builder proxyCredentials(String user, String password) {
+            this.proxyCredentials = new UsernamePasswordCredentials(user, password);
+            return this;
+        }
+
+        /**
+         * @param b true to request gzip/deflate compressed responses and decompress them transparently
+         */
+        public Builder compression(boolean b) {
+            this.compressionEnabled = b;
+            return this;
+        }
+
+        /**
+         * @param b true to keep the raw JSON body of every response in {@link Response#getJson()};
+         *          otherwise responses are decoded as a stream and the raw body is not kept
+         */
+        public Builder retainJson(boolean b) {
+            this.retainJson = b;
+            return this;
+        }
+
+        public Builder maxConnections(int total, int perRoute) {
+            this.maxConnections = total;
+            this.maxConnectionsPerRoute = perRoute;
+            return this;
+        }
+
+        /**
+         * @param cache consulted before every search request, or null to always go to the network
+         */
+        public Builder responseCache(ResponseCache cache) {
+            this.responseCache = cache;
+            return this;
+        }
+
+        /**
+         * @param permitsPerSecond sustained request rate, or 0 for no limit
+         * @param burst            requests that may be sent back to back after an idle period
+         */
+        public Builder rateLimit(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts     attempts per request including the first, 1 to never retry
+         * @param baseDelayMillis upper bound of the jittered wait before the first retry; it
+         *                        doubles for every further retry
+         * @param maxDelayMillis  cap on the upper bound of any wait
+         */
+        public Builder retries(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+            this.maxAttempts = maxAttempts;
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param failureThreshold consecutive transient failures after which an endpoint fails fast
+         * @param openMillis       how long it fails fast before a trial request is let through
+         */
+        public Builder circuitBreaker(int failureThreshold, long openMillis) {
+            this.breakerFailureThreshold = failureThreshold;
+            this.breakerOpenMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * @param delayMillis send a second copy of a search request that has not been answered
+         *                    after this long, typically around the 95th percentile latency, or 0
+         *                    to never hedge
+         */
+        public Builder hedgeAfter(long delayMillis) {
+            this.hedgeDelayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * @param registry receives connect, response and JSON decode times per service and
+         *                 connection pool gauges, or null to record nothing
+         */
+        public Builder metrics(MetricsRegistry registry) {
+            this.metrics = registry;
+            return this;
+        }
+
+        public Client build() {
+            return new Client(this, null);
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package com.library.api.search.engine.google;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent tier of {@link TieredResponseCache}: one file per cache key holding the expiry time
+ * followed by the response as UTF-8 JSON. Files are read through a read-only memory mapping and
+ * written to a temporary file that is then atomically renamed, so readers never see partial data
+ * and entries survive restarts. The total size of the entries is capped: a write that goes over
+ * the cap evicts the least recently written entries.
+ */
+class DiskResponseStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".json";
+
+    private final File directory;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * @param maxBytes cap on the total size of the entries
+     */
+    DiskResponseStore(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+        for (File file : entries()) {
+            usedBytes.addAndGet(file.length());
+        }
+    }
+
+    /**
+     * @return the stored entry, or null if there is none or it expired
+     */
+    Stored read(String key, long now) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() < 8) {
+                    return null;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long expiresAt = buffer.getLong();
+                if (expiresAt <= now) {
+                    delete(file);
+                    return null;
+                }
+                return new Stored(UTF_8.decode(buffer).toString(), expiresAt);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, then evicts the oldest entries if the cap is exceeded. Writes must not run
+     * concurrently with each other.
+     */
+    void write(String key, String json, long expiresAt) {
+        File file = fileFor(key);
+        long replaced = file.length();
+        try {
+            File tmp = File.createTempFile("response", ".tmp", directory);
+            try {
+                byte[] body = json.getBytes(UTF_8);
+                RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(8).putLong(expiresAt);
+                    header.flip();
+                    raf.getChannel().write(new ByteBuffer[]{header, ByteBuffer.wrap(body)});
+                } finally {
+                    raf.close();
+                }
+                long written = tmp.length();
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                usedBytes.addAndGet(written - replaced);
+            } finally {
+                tmp.delete();
+            }
+        } catch (IOException ex) {
+            // the disk tier is best effort; the in-memory tier still holds the response
+        }
+        if (usedBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently written entries until the store is down to 90% of its cap, so
+     * that not every following write has to evict again.
+     */
+    private void evict() {
+        File[] files = entries();
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        long target = maxBytes / 10 * 9;
+        for (int i = 0; i < order.length && usedBytes.get() > target; i++) {
+            delete(files[order[i]]);
+        }
+    }
+
+    private void delete(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            usedBytes.addAndGet(-length);
+        }
+    }
+
+    private File[] entries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int n = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[n++] = file;
+            }
+        }
+        return Arrays.copyOf(files, n);
+    }
+
+
+    /**
+     * Deletes all expired entries.
+     *
+     * @return number of entries deleted
+     */
+    int purgeExpired(long now) {
+        int purged = 0;
+        for (File file : entries()) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                long expiresAt;
+                try {
+                    expiresAt = raf.length() >= 8 ? raf.readLong() : 0;
+                } finally {
+                    raf.close();
+                }
+                if (expiresAt <= now) {
+                    delete(file);
+                    purged++;
+                }
+            } catch (IOException ex) {
+                // skip files we cannot read
+            }
+        }
+        return purged;
+    }
+
+    static class Stored {
+        final String json;
+        final long expiresAt;
+
+        Stored(String json, long expiresAt) {
+            this.json = json;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private File fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, name.append(SUFFIX).toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
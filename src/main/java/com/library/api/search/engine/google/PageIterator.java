@@ -0,0 +1,121 @@
+package com.library.api.search.engine.google;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Fetches a batch of pages concurrently and returns their results in request order. At most
+ * {@code parallelism} pages are in flight; each completed page starts the next one, so the window
+ * keeps moving even while the consumer is still reading an earlier page. A page that failed
+ * throws from {@link #hasNext()} once the consumer reaches it.
+ * <p/>
+ * A consumer that stops before the last page should {@link #close()} the iterator, so that no
+ * further pages are requested.
+ */
+public class PageIterator implements Iterator<Result>, Closeable {
+
+    private final Client client;
+    private final List<PageRequest> pages;
+    private final List<CompletableFuture<Response>> slots;
+    private final List<CompletableFuture<Response>> requests;
+    private final AtomicInteger launched = new AtomicInteger();
+    private volatile boolean closed;
+    private int page;
+    private Iterator<Result> current = Collections.<Result>emptyList().iterator();
+
+    PageIterator(Client client, List<PageRequest> pages, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.client = client;
+        this.pages = pages;
+        this.slots = new ArrayList<CompletableFuture<Response>>(pages.size());
+        this.requests = new ArrayList<CompletableFuture<Response>>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            slots.add(new CompletableFuture<Response>());
+            requests.add(null);
+        }
+        for (int i = 0; i < Math.min(parallelism, slots.size()); i++) {
+            launchNext();
+        }
+    }
+
+    private void launchNext() {
+        if (closed) {
+            return;
+        }
+        int i = launched.getAndIncrement();
+        if (i >= slots.size()) {
+            return;
+        }
+        final CompletableFuture<Response> slot = slots.get(i);
+        PageRequest p = pages.get(i);
+        CompletableFuture<Response> request = client.sendSearchRequestAsync(p.getEndpoint(), p.toParams());
+        synchronized (requests) {
+            if (closed) {
+                // close() ran while this page was being launched
+                request.cancel(false);
+                return;
+            }
+            requests.set(i, request);
+        }
+        request.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable failure) {
+                if (failure == null) {
+                    slot.complete(r);
+                } else {
+                    slot.completeExceptionally(failure);
+                }
+                launchNext();
+            }
+        });
+    }
+
+    public boolean hasNext() {
+        while (!current.hasNext() && !closed && page < slots.size()) {
+            Response r = Client.await(slots.get(page));
+            slots.set(page++, null);
+            current = r.getResponseData().getResults().iterator();
+        }
+        return current.hasNext();
+    }
+
+    public Result next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops requesting further pages and cancels the ones still pending. Results of the current
+     * page that were not read yet are dropped.
+     */
+    public void close() {
+        closed = true;
+        current = Collections.<Result>emptyList().iterator();
+        synchronized (requests) {
+            for (CompletableFuture<Response> request : requests) {
+                if (request != null) {
+                    request.cancel(false);
+                }
+            }
+        }
+        for (CompletableFuture<Response> slot : slots) {
+            if (slot != null) {
+                slot.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.library.api.search.engine.google;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a search: the service, its parameters and the window of results to return. The
+ * service returns at most {@link #MAX_PAGE_SIZE} results per page and only the first
+ * {@link #MAX_RESULTS} results of a query.
+ */
+public final class PageRequest {
+
+    public static final int MAX_PAGE_SIZE = 8;
+    public static final int MAX_RESULTS = 64;
+
+    private final String endpoint;
+    private final Map<String, String> params;
+    private final int start;
+    private final int pageSize;
+
+    private PageRequest(String endpoint, Map<String, String> params, int start, int pageSize) {
+        if (start < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("invalid page: start=" + start + ", size=" + pageSize);
+        }
+        this.endpoint = endpoint;
+        this.params = params;
+        this.start = start;
+        this.pageSize = pageSize;
+    }
+
+    private static PageRequest first(String endpoint, Map<String, String> params) {
+        return new PageRequest(endpoint, params, 0, MAX_PAGE_SIZE);
+    }
+
+    public static PageRequest web(String query) {
+        return first(Client.WEB_SEARCH_ENDPOINT, Client.queryParams(query));
+    }
+
+    public static PageRequest books(String query) {
+        return first(Client.BOOK_SEARCH_ENDPOINT, Client.queryParams(query));
+    }
+
+    public static PageRequest images(String query) {
+        return first(Client.IMAGE_SEARCH_ENDPOINT, Client.queryParams(query));
+    }
+
+    public static PageRequest blogs(String query) {
+        return first(Client.BLOG_SEARCH_ENDPOINT, Client.queryParams(query));
+    }
+
+    public static PageRequest videos(String query, OrderBy order) {
+        return first(Client.VIDEO_SEARCH_ENDPOINT, Client.videoParams(query, order));
+    }
+
+    public static PageRequest news(String query, String location, NewsTopic topic) {
+        return first(Client.NEWS_SEARCH_ENDPOINT, Client.newsParams(query, location, topic));
+    }
+
+    public static PageRequest local(double lat, double lon, String query) {
+        return first(Client.LOCAL_SEARCH_ENDPOINT, Client.localParams(lat, lon, query));
+    }
+
+    /**
+     * @return the same search starting at result {@code start} with up to {@code pageSize} results
+     */
+    public PageRequest page(int start, int pageSize) {
+        return new PageRequest(endpoint, params, start, pageSize);
+    }
+
+    /**
+     * @return the first {@code count} consecutive pages of this search, stopping at
+     * {@link #MAX_RESULTS}
+     */
+    public List<PageRequest> pages(int count, int pageSize) {
+        List<PageRequest> pages = new ArrayList<PageRequest>(count);
+        for (int i = 0; i < count; i++) {
+            int offset = start + i * pageSize;
+            if (offset >= MAX_RESULTS) {
+                break;
+            }
+            pages.add(page(offset, pageSize));
+        }
+        return Collections.unmodifiableList(pages);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return a fresh copy of the request parameters including the page window
+     */
+    Map<String, String> toParams() {
+        Map<String, String> p = new LinkedHashMap<String, String>(params);
+        p.put("start", String.valueOf(start));
+        p.put("rsz", String.valueOf(pageSize));
+        return p;
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + " " + params + " [" + start + ", " + (start + pageSize) + ")";
+    }
+}
@@ -0,0 +1,59 @@
+package com.library.api.search.engine.google;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting how fast {@link Client} sends requests. The bucket holds up to
+ * {@code burst} permits and refills at a steady rate; a caller that finds it empty takes a permit
+ * on credit and waits until it would have been refilled, so waiting callers are served in order.
+ */
+class RateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+    private double permits;
+    private long refilledAt;
+
+    RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.permits = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit, borrowing against future refills when the bucket is empty.
+     *
+     * @return nanoseconds the caller must wait before using the permit, 0 if it can go now
+     */
+    synchronized long reserve() {
+        refill();
+        permits -= 1;
+        return (permits >= 0) ? 0 : (long) (-permits / permitsPerNano);
+    }
+
+    /**
+     * @return true if a permit was available right now and was taken
+     */
+    synchronized boolean tryAcquire() {
+        refill();
+        if (permits >= 1) {
+            permits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    void acquire() throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(reserve());
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        permits = Math.min(burst, permits + (now - refilledAt) * permitsPerNano);
+        refilledAt = now;
+    }
+}
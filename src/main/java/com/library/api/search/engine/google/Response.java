@@ -19,6 +19,9 @@ public class Response {
         this.responseData = responseData;
     }
 
+    /**
+     * @return the raw response body, or null unless the client was asked to retain it
+     */
     public String getJson() {
         return json;
     }
@@ -0,0 +1,199 @@
+package com.library.api.search.engine.google;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapters for the search response model. They set fields directly instead of
+ * through reflection and skip everything the model does not keep (status, cursor, the many
+ * per-service result fields) without materializing it. Writing produces the same shape, so
+ * responses can be stored and read back by {@link TieredResponseCache}.
+ */
+final class ResponseAdapters {
+
+    static final TypeAdapter<Image> IMAGE = new TypeAdapter<Image>() {
+        public void write(JsonWriter out, Image image) throws IOException {
+            if (image == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("url").value(image.getUrl());
+            out.endObject();
+        }
+
+        public Image read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Image image = new Image();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("url".equals(in.nextName())) {
+                    image.setUrl(nextString(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return image;
+        }
+    };
+
+    static final TypeAdapter<Result> RESULT = new TypeAdapter<Result>() {
+        public void write(JsonWriter out, Result r) throws IOException {
+            if (r == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("title").value(r.getTitle());
+            out.name("unescapedUrl").value(r.getUnescapedUrl());
+            out.name("clusterUrl").value(r.getClusterUrl());
+            out.name("url").value(r.getUrl());
+            out.name("publisher").value(r.getPublisher());
+            out.name("publishedDate").value(r.getPublishedDate());
+            out.name("location").value(r.getLocation());
+            out.name("content").value(r.getContent());
+            out.name("image");
+            IMAGE.write(out, r.getImage());
+            out.endObject();
+        }
+
+        public Result read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Result r = new Result();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("title".equals(name)) {
+                    r.setTitle(nextString(in));
+                } else if ("unescapedUrl".equals(name)) {
+                    r.setUnescapedUrl(nextString(in));
+                } else if ("clusterUrl".equals(name)) {
+                    r.setClusterUrl(nextString(in));
+                } else if ("url".equals(name)) {
+                    r.setUrl(nextString(in));
+                } else if ("publisher".equals(name)) {
+                    r.setPublisher(nextString(in));
+                } else if ("publishedDate".equals(name)) {
+                    r.setPublishedDate(nextString(in));
+                } else if ("location".equals(name)) {
+                    r.setLocation(nextString(in));
+                } else if ("content".equals(name)) {
+                    r.setContent(nextString(in));
+                } else if ("image".equals(name)) {
+                    r.setImage(IMAGE.read(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return r;
+        }
+    };
+
+    static final TypeAdapter<Response.ResponseData> RESPONSE_DATA = new TypeAdapter<Response.ResponseData>() {
+        public void write(JsonWriter out, Response.ResponseData data) throws IOException {
+            if (data == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("results").beginArray();
+            for (Result r : data.getResults()) {
+                RESULT.write(out, r);
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        public Response.ResponseData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Response.ResponseData data = new Response.ResponseData();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("results".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                    List<Result> results = new ArrayList<Result>(PageRequest.MAX_PAGE_SIZE);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        results.add(RESULT.read(in));
+                    }
+                    in.endArray();
+                    data.setResults(results);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    };
+
+    /**
+     * The raw body in {@link Response#getJson()} is never written; it is the document itself.
+     */
+    static final TypeAdapter<Response> RESPONSE = new TypeAdapter<Response>() {
+        public void write(JsonWriter out, Response response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("responseData");
+            RESPONSE_DATA.write(out, response.getResponseData());
+            out.endObject();
+        }
+
+        public Response read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Response response = new Response();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("responseData".equals(in.nextName())) {
+                    response.setResponseData(RESPONSE_DATA.read(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    };
+
+    private ResponseAdapters() {
+    }
+
+    static GsonBuilder register(GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(Response.class, RESPONSE)
+                .registerTypeAdapter(Response.ResponseData.class, RESPONSE_DATA)
+                .registerTypeAdapter(Result.class, RESULT)
+                .registerTypeAdapter(Image.class, IMAGE);
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
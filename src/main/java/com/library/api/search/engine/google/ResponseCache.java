@@ -0,0 +1,39 @@
+package com.library.api.search.engine.google;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cache of parsed search responses consulted by {@link Client} before sending a request.
+ * Implementations must be thread-safe. Cached responses are shared between callers and must not
+ * be modified.
+ */
+public interface ResponseCache {
+
+    /**
+     * @param endpoint the search endpoint URL
+     * @param key      the endpoint URL with its canonical query string
+     * @return the cached response, or null if absent or expired
+     */
+    Response get(String endpoint, String key);
+
+    /**
+     * Looks up a response for a non-blocking request. May be called from I/O threads, so implementations
+     * with a slow tier should answer from memory and complete the future elsewhere.
+     *
+     * @param endpoint the search endpoint URL
+     * @param key      the endpoint URL with its canonical query string
+     * @return a future completed with the cached response, or null if absent or expired
+     */
+    default CompletableFuture<Response> getAsync(String endpoint, String key) {
+        return CompletableFuture.completedFuture(get(endpoint, key));
+    }
+
+    /**
+     * Stores a response. May be called from I/O threads, so it must not block on slow storage.
+     *
+     * @param endpoint the search endpoint URL, which decides how long the response stays fresh
+     * @param key      the endpoint URL with its canonical query string
+     * @param response the parsed response
+     */
+    void put(String endpoint, String key, Response response);
+}
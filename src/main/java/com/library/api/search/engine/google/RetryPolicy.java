@@ -0,0 +1,66 @@
+package com.library.api.search.engine.google;
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retries with exponential backoff and full jitter: before attempt {@code n + 1} the
+ * client waits a random time between zero and {@code min(maxDelay, baseDelay * 2^(n-1))}, so
+ * clients that failed together do not retry together.
+ */
+class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    boolean shouldRetry(int attempt, Throwable failure) {
+        return attempt < maxAttempts && isRetryable(failure);
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     * @return milliseconds to wait before the next attempt
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return (ceiling <= 0) ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Throttling (429), server errors (5xx) and I/O failures are transient and worth retrying;
+     * other statuses, malformed responses and open circuits are not.
+     */
+    static boolean isRetryable(Throwable failure) {
+        Throwable t = failure;
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof UnexpectedStatusException) {
+            int status = ((UnexpectedStatusException) t).getStatusCode();
+            return status == 429 || status >= 500;
+        }
+        if (t instanceof JsonParseException) {
+            return false;
+        }
+        if (t instanceof RuntimeException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof IOException;
+    }
+}
@@ -0,0 +1,252 @@
+package com.library.api.search.engine.google;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link ResponseCache} with a bounded in-memory LRU tier and an optional on-disk tier that
+ * survives restarts. How long a response stays fresh depends on the search service it came from:
+ * news goes stale quickly, books hardly change. Use {@link #setTimeToLive} to override the
+ * defaults per service ("web", "news", "books", "images", "local", "videos", "blogs").
+ * <p>
+ * Disk writes happen behind {@link #put} on a single background thread, and {@link #getAsync}
+ * reads the disk on that thread too, so the non-blocking client never waits on file I/O. The same
+ * thread purges expired entries every {@value #PURGE_INTERVAL_MINUTES} minutes, and the disk tier
+ * evicts its oldest entries when it outgrows its size cap.
+ * <p>
+ * Cached responses are shared, so their result lists are made unmodifiable when they are stored.
+ */
+public class TieredResponseCache implements ResponseCache {
+
+    private static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long DEFAULT_MAX_DISK_BYTES = 256L * 1024 * 1024;
+    private static final long PURGE_INTERVAL_MINUTES = 10;
+
+    private final int maxEntries;
+    private final DiskResponseStore disk;
+    private final ScheduledExecutorService diskExecutor;
+    private final Gson gson = Client.sharedGson();
+    private final Map<String, Long> timeToLive = new HashMap<String, Long>();
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of responses kept in memory
+     */
+    public TieredResponseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.disk = null;
+        this.diskExecutor = null;
+        setDefaultTimeToLive();
+    }
+
+    /**
+     * @param maxEntries    maximum number of responses kept in memory
+     * @param diskDirectory folder for the persistent tier, holding at most 256 MB
+     * @throws IOException when the folder cannot be created
+     */
+    public TieredResponseCache(int maxEntries, File diskDirectory) throws IOException {
+        this(maxEntries, diskDirectory, DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * @param maxEntries    maximum number of responses kept in memory
+     * @param diskDirectory folder for the persistent tier
+     * @param maxDiskBytes  cap on the size of the persistent tier
+     * @throws IOException when the folder cannot be created
+     */
+    public TieredResponseCache(int maxEntries, File diskDirectory, long maxDiskBytes) throws IOException {
+        this.maxEntries = maxEntries;
+        this.disk = new DiskResponseStore(diskDirectory, maxDiskBytes);
+        this.diskExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "response-cache-disk");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.diskExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                purgeExpired();
+            }
+        }, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        setDefaultTimeToLive();
+    }
+
+    private void setDefaultTimeToLive() {
+        setTimeToLive("news", 5, TimeUnit.MINUTES);
+        setTimeToLive("blogs", 30, TimeUnit.MINUTES);
+        setTimeToLive("web", 1, TimeUnit.HOURS);
+        setTimeToLive("local", 1, TimeUnit.HOURS);
+        setTimeToLive("videos", 6, TimeUnit.HOURS);
+        setTimeToLive("images", 1, TimeUnit.DAYS);
+        setTimeToLive("books", 7, TimeUnit.DAYS);
+    }
+
+    /**
+     * @param service the last path segment of the endpoint, e.g. "news"
+     */
+    public synchronized void setTimeToLive(String service, long duration, TimeUnit unit) {
+        timeToLive.put(service, unit.toMillis(duration));
+    }
+
+    public Response get(String endpoint, String key) {
+        long now = System.currentTimeMillis();
+        Response response = getFromMemory(key, now);
+        if (response == null && disk != null) {
+            response = getFromDisk(key, now);
+        }
+        if (response == null) {
+            misses.incrementAndGet();
+        }
+        return response;
+    }
+
+    public CompletableFuture<Response> getAsync(String endpoint, final String key) {
+        final long now = System.currentTimeMillis();
+        Response response = getFromMemory(key, now);
+        if (response != null || disk == null) {
+            if (response == null) {
+                misses.incrementAndGet();
+            }
+            return CompletableFuture.completedFuture(response);
+        }
+        return CompletableFuture.supplyAsync(new Supplier<Response>() {
+            public Response get() {
+                Response stored = getFromDisk(key, now);
+                if (stored == null) {
+                    misses.incrementAndGet();
+                }
+                return stored;
+            }
+        }, diskExecutor);
+    }
+
+    private synchronized Response getFromMemory(String key, long now) {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > now) {
+                memoryHits.incrementAndGet();
+                return entry.response;
+            }
+            memory.remove(key);
+        }
+        return null;
+    }
+
+    private Response getFromDisk(String key, long now) {
+        DiskResponseStore.Stored stored = disk.read(key, now);
+        if (stored == null) {
+            return null;
+        }
+        Response response = gson.fromJson(stored.json, Response.class);
+        synchronized (this) {
+            // keep the expiry it was written with, so a disk hit does not extend its lifetime
+            remember(key, new Entry(response, stored.expiresAt));
+        }
+        diskHits.incrementAndGet();
+        return response;
+    }
+
+    public void put(String endpoint, final String key, final Response response) {
+        final long expiresAt = System.currentTimeMillis() + timeToLive(endpoint);
+        synchronized (this) {
+            remember(key, new Entry(response, expiresAt));
+        }
+        if (disk != null) {
+            diskExecutor.execute(new Runnable() {
+                public void run() {
+                    String json = (response.getJson() != null) ? response.getJson() : gson.toJson(response);
+                    disk.write(key, json, expiresAt);
+                }
+            });
+        }
+    }
+
+    private void remember(String key, Entry entry) {
+        Response.ResponseData data = entry.response.getResponseData();
+        if (data != null) {
+            data.setResults(Collections.unmodifiableList(data.getResults()));
+        }
+        memory.put(key, entry);
+        if (memory.size() > maxEntries) {
+            memory.remove(memory.keySet().iterator().next());
+        }
+    }
+
+    private synchronized long timeToLive(String endpoint) {
+        String service = endpoint.substring(endpoint.lastIndexOf('/') + 1);
+        Long ttl = timeToLive.get(service);
+        return (ttl == null) ? DEFAULT_TTL : ttl;
+    }
+
+    /**
+     * Drops expired entries from both tiers.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<Entry> it = memory.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expiresAt <= now) {
+                    it.remove();
+                }
+            }
+        }
+        if (disk != null) {
+            disk.purgeExpired(now);
+        }
+    }
+
+    /**
+     * Finishes pending disk writes and stops the background thread; the cache must not be used
+     * afterwards.
+     *
+     * @throws InterruptedException when interrupted while waiting for the writes
+     */
+    public void close() throws InterruptedException {
+        if (diskExecutor != null) {
+            diskExecutor.shutdown();
+            diskExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry {
+        private final Response response;
+        private final long expiresAt;
+
+        Entry(Response response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.library.api.search.engine.google;
+
+import com.library.api.search.metrics.MetricsRegistry;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Records how long it takes to open each new pooled connection, which the time to the response
+ * alone does not separate from server latency.
+ */
+class TimedConnectionSocketFactory implements ConnectionSocketFactory {
+
+    private final ConnectionSocketFactory delegate;
+    private final MetricsRegistry metrics;
+
+    TimedConnectionSocketFactory(ConnectionSocketFactory delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public Socket createSocket(HttpContext context) throws IOException {
+        return delegate.createSocket(context);
+    }
+
+    public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+        } finally {
+            metrics.recordTime("google.http.connect", System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.library.api.search.engine.google;
+
+/**
+ * Thrown when the service answers with a status other than 200.
+ */
+public class UnexpectedStatusException extends RuntimeException {
+
+    private final int statusCode;
+
+    public UnexpectedStatusException(int statusCode) {
+        super("unexpected HTTP response status code = " + statusCode);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,69 @@
+package com.library.api.search.federated;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One entry of a merged result list. A document returned by several sources appears once, with
+ * the best of its normalized scores and every source that returned it.
+ */
+public class FederatedHit {
+
+    private final String url;
+    private final String title;
+    private final String snippet;
+    private final Set<Source> sources;
+    private float score;
+
+    FederatedHit(String url, String title, String snippet, Source source, float score) {
+        this.url = url;
+        this.title = title;
+        this.snippet = snippet;
+        this.sources = EnumSet.of(source);
+        this.score = score;
+    }
+
+    /**
+     * Folds in the same document as returned by another source.
+     */
+    void merge(Source source, float otherScore) {
+        sources.add(source);
+        score = Math.max(score, otherScore);
+    }
+
+    /**
+     * @return the result URL, or a file: URL for a local document
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the title, or null if the source has none
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return a text snippet, or null if the source has none
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public Set<Source> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return the normalized score, between 0 and the source weight
+     */
+    public float getScore() {
+        return score;
+    }
+
+    public String toString() {
+        return "FederatedHit[url:" + url + ",score:" + score + ",sources:" + sources + "]";
+    }
+}
@@ -0,0 +1,55 @@
+package com.library.api.search.federated;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The merged, ranked hits of a federated search and how each source fared.
+ */
+public class FederatedResults {
+
+    private final List<FederatedHit> hits;
+    private final Map<Source, SourceStatus> statuses;
+    private final long elapsedMillis;
+
+    FederatedResults(List<FederatedHit> hits, Map<Source, SourceStatus> statuses, long elapsedMillis) {
+        this.hits = hits;
+        this.statuses = statuses;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<FederatedHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the outcome of every source that was queried
+     */
+    public Map<Source, SourceStatus> getStatuses() {
+        return statuses;
+    }
+
+    public SourceStatus getStatus(Source source) {
+        return statuses.get(source);
+    }
+
+    /**
+     * @return true if any queried source timed out or failed
+     */
+    public boolean isPartial() {
+        for (SourceStatus status : statuses.values()) {
+            if (status != SourceStatus.COMPLETE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String toString() {
+        return "FederatedResults[statuses:" + statuses + ",elapsed:" + elapsedMillis + "ms,hits:" + hits + "]";
+    }
+}
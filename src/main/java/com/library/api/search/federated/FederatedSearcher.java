@@ -0,0 +1,310 @@
+package com.library.api.search.federated;
+
+import com.library.api.search.engine.google.Client;
+import com.library.api.search.engine.google.PageRequest;
+import com.library.api.search.engine.google.Result;
+import com.library.api.search.lucene.SearchHits;
+import com.library.api.search.lucene.SearchResult;
+import com.library.api.search.lucene.TextFileSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Searches the local index and Google at the same time under one latency budget. Every source is
+ * started before any is waited on, so a search takes as long as its slowest source or the budget,
+ * whichever is shorter, instead of the sum of all sources. Whatever has arrived when the budget
+ * runs out is returned; the {@link FederatedResults#getStatuses() statuses} tell which sources
+ * are missing.
+ * <p/>
+ * Scores from different sources are not comparable, so each source's scores are normalized before
+ * merging: local Lucene scores are divided by the best local score, and remote results, which have
+ * no score, are scored by rank, from 1 for the first result down to 1/n for the last. Both are
+ * then multiplied by the source's {@link #setWeight(Source, float) weight}. A document returned by
+ * several sources, recognized by its URL or file path, is kept once with its best score.
+ */
+public class FederatedSearcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FederatedSearcher.class);
+    private static final String[] LOCAL_FIELDS = {"path", "url", "title"};
+
+    private final TextFileSearcher local;
+    private final Client remote;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Map<Source, Float> weights = new EnumMap<Source, Float>(Source.class);
+
+    /**
+     * Creates a federated searcher with its own pool of daemon threads for local searches: one per
+     * processor, with a short queue. When the pool is saturated further local searches are
+     * rejected and reported as {@link SourceStatus#FAILED} instead of piling up behind the budget.
+     *
+     * @param local  the local index, or null to search Google only
+     * @param remote the Google client, or null to search the local index only
+     */
+    public FederatedSearcher(TextFileSearcher local, Client remote) {
+        this(local, remote, createExecutor(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    /**
+     * @param local    the local index, or null to search Google only
+     * @param remote   the Google client, or null to search the local index only
+     * @param executor runs the blocking local searches; remote searches do not use it. A search
+     *                 it rejects is reported as {@link SourceStatus#FAILED}
+     */
+    public FederatedSearcher(TextFileSearcher local, Client remote, ExecutorService executor) {
+        this(local, remote, executor, false);
+    }
+
+    private FederatedSearcher(TextFileSearcher local, Client remote, ExecutorService executor, boolean ownsExecutor) {
+        this.local = local;
+        this.remote = remote;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        for (Source source : Source.values()) {
+            weights.put(source, 1f);
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 4), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "federated-search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @param weight multiplier for the normalized scores of the source, 1 by default
+     */
+    public synchronized void setWeight(Source source, float weight) {
+        weights.put(source, weight);
+    }
+
+    private synchronized float weight(Source source) {
+        return weights.get(source);
+    }
+
+    /**
+     * Searches the local index and Google web search.
+     *
+     * @see #search(String, int, long, TimeUnit, Set)
+     */
+    public FederatedResults search(String query, int maxResults, long budget, TimeUnit unit) {
+        Set<Source> sources = EnumSet.noneOf(Source.class);
+        if (local != null) {
+            sources.add(Source.LOCAL);
+        }
+        if (remote != null) {
+            sources.add(Source.WEB);
+        }
+        return search(query, maxResults, budget, unit, sources);
+    }
+
+    /**
+     * @param query      the query; for the local index in QueryParser syntax
+     * @param maxResults maximum number of hits per source and in the merged list; remote
+     *                   sources return at most {@link PageRequest#MAX_PAGE_SIZE}
+     * @param budget     time after which sources that have not answered are left out
+     * @param sources    the sources to query
+     * @return the merged hits, best first
+     * @throws IllegalArgumentException when maxResults is less than 1
+     */
+    public FederatedResults search(String query, int maxResults, long budget, TimeUnit unit, Set<Source> sources) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1: " + maxResults);
+        }
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(budget);
+
+        Map<Source, Future<List<FederatedHit>>> pending = new EnumMap<Source, Future<List<FederatedHit>>>(Source.class);
+        for (Source source : sources) {
+            pending.put(source, submit(source, query, maxResults));
+        }
+
+        Map<Source, SourceStatus> statuses = new EnumMap<Source, SourceStatus>(Source.class);
+        Map<String, FederatedHit> merged = new LinkedHashMap<String, FederatedHit>();
+        boolean interrupted = false;
+        for (Map.Entry<Source, Future<List<FederatedHit>>> e : pending.entrySet()) {
+            Source source = e.getKey();
+            Future<List<FederatedHit>> future = e.getValue();
+            try {
+                if (interrupted) {
+                    throw new TimeoutException();
+                }
+                List<FederatedHit> hits = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                statuses.put(source, SourceStatus.COMPLETE);
+                for (FederatedHit hit : hits) {
+                    FederatedHit seen = merged.get(dedupeKey(hit.getUrl()));
+                    if (seen == null) {
+                        merged.put(dedupeKey(hit.getUrl()), hit);
+                    } else {
+                        seen.merge(source, hit.getScore());
+                    }
+                }
+            } catch (TimeoutException ex) {
+                // not interrupted: an interrupt can close the index files under a running Lucene search
+                future.cancel(false);
+                statuses.put(source, SourceStatus.TIMED_OUT);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+                future.cancel(false);
+                statuses.put(source, SourceStatus.TIMED_OUT);
+            } catch (ExecutionException ex) {
+                LOG.warn("Federated search of " + source + " failed", ex.getCause());
+                statuses.put(source, SourceStatus.FAILED);
+            }
+        }
+
+        List<FederatedHit> hits = new ArrayList<FederatedHit>(merged.values());
+        Collections.sort(hits, new Comparator<FederatedHit>() {
+            public int compare(FederatedHit a, FederatedHit b) {
+                return Float.compare(b.getScore(), a.getScore());
+            }
+        });
+        if (hits.size() > maxResults) {
+            hits = new ArrayList<FederatedHit>(hits.subList(0, maxResults));
+        }
+        return new FederatedResults(hits, statuses, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private Future<List<FederatedHit>> submit(final Source source, final String query, final int maxResults) {
+        int pageSize = Math.min(maxResults, PageRequest.MAX_PAGE_SIZE);
+        switch (source) {
+            case LOCAL:
+                if (local == null) {
+                    throw new IllegalArgumentException("no local index configured");
+                }
+                try {
+                    return executor.submit(new Callable<List<FederatedHit>>() {
+                        public List<FederatedHit> call() {
+                            return localHits(local.search(query, maxResults, LOCAL_FIELDS));
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    // surfaces as an ExecutionException, so the source is marked FAILED
+                    CompletableFuture<List<FederatedHit>> rejected = new CompletableFuture<List<FederatedHit>>();
+                    rejected.completeExceptionally(ex);
+                    return rejected;
+                }
+            case WEB:
+                return remote().searchAsync(PageRequest.web(query).page(0, pageSize)).thenApply(remoteHits(source));
+            case NEWS:
+                return remote().searchAsync(PageRequest.news(query, null, null).page(0, pageSize)).thenApply(remoteHits(source));
+            default:
+                throw new IllegalArgumentException("unsupported source: " + source);
+        }
+    }
+
+    private Client remote() {
+        if (remote == null) {
+            throw new IllegalArgumentException("no Google client configured");
+        }
+        return remote;
+    }
+
+    private List<FederatedHit> localHits(SearchHits searchHits) {
+        float weight = weight(Source.LOCAL);
+        float best = 0;
+        for (SearchResult r : searchHits.getResults()) {
+            best = Math.max(best, r.getScore());
+        }
+
+        List<FederatedHit> hits = new ArrayList<FederatedHit>(searchHits.getResults().size());
+        for (SearchResult r : searchHits.getResults()) {
+            String path = r.get("path");
+            String url = r.get("url");
+            if (url == null && path == null) {
+                continue;
+            }
+            Path file = (path == null) ? null : Paths.get(path);
+            String title = r.get("title");
+            if (title == null && file != null && file.getFileName() != null) {
+                title = file.getFileName().toString();
+            }
+            hits.add(new FederatedHit((url != null) ? url : file.toUri().toString(), title, null, Source.LOCAL,
+                    (best > 0) ? weight * r.getScore() / best : 0));
+        }
+        return hits;
+    }
+
+    private Function<List<Result>, List<FederatedHit>> remoteHits(final Source source) {
+        final float weight = weight(source);
+        return new Function<List<Result>, List<FederatedHit>>() {
+            public List<FederatedHit> apply(List<Result> results) {
+                List<FederatedHit> hits = new ArrayList<FederatedHit>(results.size());
+                int n = results.size();
+                for (int rank = 0; rank < n; rank++) {
+                    Result r = results.get(rank);
+                    String url = (r.getUnescapedUrl() != null) ? r.getUnescapedUrl() : r.getUrl();
+                    if (url == null) {
+                        continue;
+                    }
+                    hits.add(new FederatedHit(url, r.getTitle(), r.getContent(), source, weight * (n - rank) / n));
+                }
+                return hits;
+            }
+        };
+    }
+
+    /**
+     * @return the URL without fragment and trailing slash, with scheme and host in lower case
+     */
+    static String dedupeKey(String url) {
+        String key = url.trim();
+        int fragment = key.indexOf('#');
+        if (fragment >= 0) {
+            key = key.substring(0, fragment);
+        }
+        while (key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        int scheme = key.indexOf("://");
+        if (scheme >= 0) {
+            int path = key.indexOf('/', scheme + 3);
+            int end = (path < 0) ? key.length() : path;
+            key = key.substring(0, end).toLowerCase(Locale.ROOT) + key.substring(end);
+        }
+        return key;
+    }
+
+    /**
+     * Stops the thread pool if this searcher created it. The local index and the client are left
+     * open.
+     */
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
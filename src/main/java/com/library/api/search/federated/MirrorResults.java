@@ -0,0 +1,44 @@
+package com.library.api.search.federated;
+
+import com.library.api.search.engine.google.Result;
+
+import java.util.List;
+
+/**
+ * Results of a {@link SearchMirror} query and where they came from.
+ */
+public class MirrorResults {
+
+    private final List<Result> results;
+    private final boolean fromMirror;
+    private final boolean stale;
+
+    MirrorResults(List<Result> results, boolean fromMirror, boolean stale) {
+        this.results = results;
+        this.fromMirror = fromMirror;
+        this.stale = stale;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * @return true if the results were answered from the local mirror without a remote request
+     */
+    public boolean isFromMirror() {
+        return fromMirror;
+    }
+
+    /**
+     * @return true if the mirror's results are older than the maximum age and are only returned
+     * because the remote request failed
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    public String toString() {
+        return "MirrorResults[fromMirror:" + fromMirror + ",stale:" + stale + ",results:" + results.size() + "]";
+    }
+}
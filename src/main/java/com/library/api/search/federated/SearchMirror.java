@@ -0,0 +1,387 @@
+package com.library.api.search.federated;
+
+import com.library.api.search.engine.google.Client;
+import com.library.api.search.engine.google.PageIterator;
+import com.library.api.search.engine.google.PageRequest;
+import com.library.api.search.engine.google.Result;
+import com.library.api.search.lucene.IndexingProfile;
+import com.library.api.search.lucene.TextFileIndexer;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.BaseDirectory;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Local Lucene mirror of Google results. Every result fetched through the mirror is written to
+ * the index, one document per source and {@code unescapedUrl}, so that repeated and related
+ * queries are answered at local index latency without spending quota. A query goes to Google only
+ * when the mirror has too few documents matching all of its words or when even its most recently
+ * fetched match is older than the {@link #setMaxAge(long, TimeUnit) maximum age}.
+ * <p/>
+ * Documents are built like those of {@link TextFileIndexer}: the snippet goes into a
+ * {@code content} field of the same type, so the mirror can also be opened with
+ * {@link com.library.api.search.lucene.TextFileSearcher} for highlighting and keyword-in-context.
+ * Markup is removed from titles and snippets before indexing. The publication date of news
+ * results is kept as a numeric doc value, so results can be {@link #searchByDate sorted by date}.
+ * <p/>
+ * The index is written with the {@link IndexingProfile#NEAR_REAL_TIME} profile, and ingested
+ * results are committed at that profile's cadence, so a crash loses at most one commit interval.
+ */
+public class SearchMirror {
+
+    public static final String URL_FIELD = "url";
+    public static final String SOURCE_FIELD = "source";
+    public static final String TITLE_FIELD = "title";
+    public static final String CONTENT_FIELD = "content";
+    public static final String PUBLISHER_FIELD = "publisher";
+    public static final String PUBLISHED_DATE_FIELD = "publishedDate";
+    public static final String PUBLISHED_FIELD = "published";
+    public static final String FETCHED_FIELD = "fetched";
+    /** Unique key of a mirrored result: the source name and the URL, separated by a space. */
+    public static final String KEY_FIELD = "key";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchMirror.class);
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final String[] QUERY_FIELDS = {TITLE_FIELD, CONTENT_FIELD};
+
+    private static final IndexingProfile PROFILE = IndexingProfile.NEAR_REAL_TIME;
+
+    private static StandardAnalyzer analyzer = new StandardAnalyzer();
+    private final Client client;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private volatile long maxAgeMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile int minLocalHits = 1;
+    private final AtomicLong docsSinceCommit = new AtomicLong();
+    private final AtomicBoolean committing = new AtomicBoolean();
+    private volatile long lastCommitNanos = System.nanoTime();
+
+    /**
+     * @param directory the directory holding the mirror index; an existing mirror is reused
+     * @param client    the client used on a miss
+     * @throws IOException when exception opening the index
+     */
+    public SearchMirror(BaseDirectory directory, Client client) throws IOException {
+        this.client = client;
+        this.writer = new IndexWriter(directory,
+                PROFILE.configure(new IndexWriterConfig(Version.LATEST, analyzer)));
+        this.searcherManager = new SearcherManager(writer, true, null);
+    }
+
+    /**
+     * @param maxAge how long fetched results answer queries before Google is asked again
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAgeMillis = unit.toMillis(maxAge);
+    }
+
+    /**
+     * @param minLocalHits matches the mirror needs to answer a query by itself, 1 by default
+     */
+    public void setMinLocalHits(int minLocalHits) {
+        this.minLocalHits = minLocalHits;
+    }
+
+    /**
+     * Answers from the mirror if it has enough fresh documents matching every word of the query,
+     * otherwise fetches from Google, stores the results and returns them. If Google fails, the
+     * mirror's matches are returned rather than nothing.
+     *
+     * @param source     {@link Source#WEB} or {@link Source#NEWS}
+     * @param query      the query as it would be sent to Google
+     * @param maxResults maximum number of results
+     * @return the results, flagged with where they came from
+     * @throws IOException when exception reading or writing the mirror
+     */
+    public MirrorResults search(Source source, String query, int maxResults) throws IOException {
+        List<Hit> local = searchLocal(source, query, maxResults, null, BooleanClause.Occur.MUST);
+        boolean enough = local.size() >= Math.min(minLocalHits, maxResults);
+        boolean fresh = newestFetch(local) >= System.currentTimeMillis() - maxAgeMillis;
+        if (enough && fresh) {
+            return new MirrorResults(results(local), true, false);
+        }
+
+        List<Result> remote;
+        try {
+            remote = fetch(source, query, maxResults);
+        } catch (RuntimeException e) {
+            if (local.isEmpty()) {
+                throw e;
+            }
+            LOG.warn("Answering \"" + query + "\" from " + (fresh ? "too few" : "stale")
+                    + " mirror results, remote search failed", e);
+            return new MirrorResults(results(local), true, !fresh);
+        }
+        ingest(source, remote);
+        return new MirrorResults(remote, false, false);
+    }
+
+    /**
+     * Searches the mirror only, newest first by publication date; results without a parseable
+     * date come last.
+     */
+    public List<Result> searchByDate(Source source, String query, int maxResults) throws IOException {
+        Sort byDate = new Sort(new SortField(PUBLISHED_FIELD, SortField.Type.LONG, true));
+        return results(searchLocal(source, query, maxResults, byDate, BooleanClause.Occur.SHOULD));
+    }
+
+    /**
+     * Writes results into the mirror, replacing any earlier document from the same source with the
+     * same {@code unescapedUrl}, and makes them searchable. Commits when the profile's commit
+     * interval has passed.
+     *
+     * @throws IOException when exception writing the index
+     */
+    public void ingest(Source source, List<Result> results) throws IOException {
+        long now = System.currentTimeMillis();
+        int written = 0;
+        for (Result r : results) {
+            String url = (r.getUnescapedUrl() != null) ? r.getUnescapedUrl() : r.getUrl();
+            if (url != null) {
+                writer.updateDocument(new Term(KEY_FIELD, key(source, url)), createDocument(source, url, r, now));
+                written++;
+            }
+        }
+        searcherManager.maybeRefresh();
+        maybeCommit(written);
+    }
+
+    private void maybeCommit(int written) throws IOException {
+        long docs = docsSinceCommit.addAndGet(written);
+        boolean due = (PROFILE.getCommitEveryDocs() > 0 && docs >= PROFILE.getCommitEveryDocs())
+                || (PROFILE.getCommitEverySeconds() > 0
+                && System.nanoTime() - lastCommitNanos >= TimeUnit.SECONDS.toNanos(PROFILE.getCommitEverySeconds()));
+
+        if (due && committing.compareAndSet(false, true)) {
+            try {
+                commit();
+            } finally {
+                committing.set(false);
+            }
+        }
+    }
+
+    private static String key(Source source, String url) {
+        return source.name() + ' ' + url;
+    }
+
+    private static Document createDocument(Source source, String url, Result r, long fetched) {
+        Document doc = new Document();
+        doc.add(new StringField(KEY_FIELD, key(source, url), Field.Store.NO));
+        doc.add(new StringField(URL_FIELD, url, Field.Store.YES));
+        doc.add(new StringField(SOURCE_FIELD, source.name(), Field.Store.NO));
+        if (r.getTitle() != null) {
+            doc.add(new TextField(TITLE_FIELD, plainText(r.getTitle()), Field.Store.YES));
+        }
+        if (r.getContent() != null) {
+            doc.add(new Field(CONTENT_FIELD, plainText(r.getContent()), TextFileIndexer.CONTENT_FIELD_TYPE));
+        }
+        if (r.getPublisher() != null) {
+            doc.add(new StoredField(PUBLISHER_FIELD, r.getPublisher()));
+        }
+        if (r.getPublishedDate() != null) {
+            doc.add(new StoredField(PUBLISHED_DATE_FIELD, r.getPublishedDate()));
+            long published = parseDate(r.getPublishedDate());
+            if (published != Long.MIN_VALUE) {
+                doc.add(new NumericDocValuesField(PUBLISHED_FIELD, published));
+            }
+        }
+        doc.add(new StoredField(FETCHED_FIELD, fetched));
+        return doc;
+    }
+
+    /**
+     * @return the date in milliseconds, or Long.MIN_VALUE if it is not an RFC 1123 date such as
+     * "Mon, 02 Mar 2015 08:00:00 -0800"
+     */
+    static long parseDate(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String plainText(String html) {
+        return StringEscapeUtils.unescapeHtml(TAG.matcher(html).replaceAll(""));
+    }
+
+    private List<Result> fetch(Source source, String query, int maxResults) {
+        PageRequest first = pageRequest(source, query);
+        if (maxResults <= PageRequest.MAX_PAGE_SIZE) {
+            return client.search(first.page(0, maxResults));
+        }
+        List<PageRequest> pages = first.pages(
+                (maxResults + PageRequest.MAX_PAGE_SIZE - 1) / PageRequest.MAX_PAGE_SIZE, PageRequest.MAX_PAGE_SIZE);
+        List<Result> results = new ArrayList<Result>(maxResults);
+        PageIterator it = client.searchPages(pages, pages.size());
+        try {
+            while (results.size() < maxResults && it.hasNext()) {
+                results.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return results;
+    }
+
+    private static PageRequest pageRequest(Source source, String query) {
+        switch (source) {
+            case WEB:
+                return PageRequest.web(query);
+            case NEWS:
+                return PageRequest.news(query, null, null);
+            default:
+                throw new IllegalArgumentException("the mirror only holds WEB and NEWS results: " + source);
+        }
+    }
+
+    /**
+     * @param occur how the words of the query combine; MUST when the hits decide whether the
+     *              mirror can answer, since with SHOULD a single shared word would count as a match
+     */
+    private List<Hit> searchLocal(Source source, String query, int maxResults, Sort sort,
+                                  BooleanClause.Occur occur) throws IOException {
+        Query parsed = toQuery(query, occur);
+        if (parsed == null) {
+            return new ArrayList<Hit>();
+        }
+        Query filtered = new FilteredQuery(parsed,
+                new QueryWrapperFilter(new TermQuery(new Term(SOURCE_FIELD, source.name()))));
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = (sort == null)
+                    ? searcher.search(filtered, maxResults)
+                    : searcher.search(filtered, maxResults, sort);
+            List<Hit> hits = new ArrayList<Hit>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                hits.add(new Hit(searcher.doc(scoreDoc.doc)));
+            }
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Builds the query from the analyzed words of the text rather than parsing it: the text is
+     * meant for Google, and words like AND, OR and NOT or stray quotes must not be read as syntax.
+     *
+     * @return a query matching each word in the title or the content, or null if the text has no
+     * indexable words
+     */
+    private static Query toQuery(String text, BooleanClause.Occur occur) throws IOException {
+        BooleanQuery query = new BooleanQuery();
+        TokenStream tokens = analyzer.tokenStream(CONTENT_FIELD, text);
+        try {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                BooleanQuery anyField = new BooleanQuery();
+                for (String field : QUERY_FIELDS) {
+                    anyField.add(new TermQuery(new Term(field, term.toString())), BooleanClause.Occur.SHOULD);
+                }
+                query.add(anyField, occur);
+            }
+            tokens.end();
+        } finally {
+            tokens.close();
+        }
+        return query.clauses().isEmpty() ? null : query;
+    }
+
+    private static long newestFetch(List<Hit> hits) {
+        long newest = Long.MIN_VALUE;
+        for (Hit hit : hits) {
+            newest = Math.max(newest, hit.fetched);
+        }
+        return newest;
+    }
+
+    private static List<Result> results(List<Hit> hits) {
+        List<Result> results = new ArrayList<Result>(hits.size());
+        for (Hit hit : hits) {
+            results.add(hit.result);
+        }
+        return results;
+    }
+
+    /**
+     * Makes everything ingested so far durable.
+     *
+     * @throws IOException when exception committing
+     */
+    public void commit() throws IOException {
+        docsSinceCommit.set(0);
+        lastCommitNanos = System.nanoTime();
+        writer.commit();
+    }
+
+    /**
+     * Commits and closes the mirror index; the client is left open.
+     *
+     * @throws IOException when exception closing the index
+     */
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    /**
+     * A mirrored result with the time it was fetched.
+     */
+    private static class Hit {
+        final Result result = new Result();
+        final long fetched;
+
+        Hit(Document doc) {
+            String url = doc.get(URL_FIELD);
+            result.setUrl(url);
+            result.setUnescapedUrl(url);
+            result.setTitle(doc.get(TITLE_FIELD));
+            result.setContent(doc.get(CONTENT_FIELD));
+            result.setPublisher(doc.get(PUBLISHER_FIELD));
+            result.setPublishedDate(doc.get(PUBLISHED_DATE_FIELD));
+            IndexableField f = doc.getField(FETCHED_FIELD);
+            this.fetched = (f == null || f.numericValue() == null) ? Long.MIN_VALUE : f.numericValue().longValue();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.library.api.search.federated;
+
+/**
+ * A back-end queried by {@link FederatedSearcher}.
+ */
+public enum Source {
+    /**
+     * The local Lucene index.
+     */
+    LOCAL,
+    /**
+     * Google web search.
+     */
+    WEB,
+    /**
+     * Google news search.
+     */
+    NEWS
+}
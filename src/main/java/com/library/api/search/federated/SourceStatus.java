@@ -0,0 +1,19 @@
+package com.library.api.search.federated;
+
+/**
+ * How a source's contribution to a federated search ended.
+ */
+public enum SourceStatus {
+    /**
+     * All of the source's results are included.
+     */
+    COMPLETE,
+    /**
+     * The source did not answer within the budget; none of its results are included.
+     */
+    TIMED_OUT,
+    /**
+     * The source failed; none of its results are included.
+     */
+    FAILED
+}
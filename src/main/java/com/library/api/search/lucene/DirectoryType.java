@@ -0,0 +1,166 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.store.BaseDirectory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link org.apache.lucene.store.Directory} implementations an index can be opened with.
+ */
+public enum DirectoryType {
+
+    /**
+     * Let Lucene pick the best implementation for the platform.
+     */
+    FS {
+        public BaseDirectory open(File path) throws IOException {
+            return FSDirectory.open(path);
+        }
+    },
+
+    /**
+     * Memory-mapped files; index data lives in the OS page cache rather than on the Java heap.
+     */
+    MMAP {
+        public BaseDirectory open(File path) throws IOException {
+            return new MMapDirectory(path);
+        }
+    },
+
+    /**
+     * Positional reads through a {@link java.nio.channels.FileChannel}; avoids address-space use
+     * on 32-bit JVMs.
+     */
+    NIO {
+        public BaseDirectory open(File path) throws IOException {
+            return new NIOFSDirectory(path);
+        }
+    },
+
+    /**
+     * A memory-mapped index in a temporary directory on a RAM-backed file system ({@code /dev/shm}
+     * when available). Behaves like an in-memory index without putting it on the Java heap; the
+     * files are deleted when the directory is closed, or at JVM exit if it never is. The path
+     * argument may be null.
+     */
+    IN_MEMORY {
+        public BaseDirectory open(File path) throws IOException {
+            Path parent = (path != null) ? path.toPath() : Paths.get(SHARED_MEMORY_DIR);
+            if (!Files.isDirectory(parent)) {
+                parent = Paths.get(System.getProperty("java.io.tmpdir"));
+            }
+            return new TemporaryMMapDirectory(Files.createTempDirectory(parent, "lucene-index"));
+        }
+    },
+
+    /**
+     * Heap-based {@link RAMDirectory}; only suitable for small indexes.
+     */
+    HEAP {
+        public BaseDirectory open(File path) throws IOException {
+            return new RAMDirectory();
+        }
+    };
+
+    private static final String SHARED_MEMORY_DIR = "/dev/shm";
+    private static final int WARM_BUFFER_SIZE = 64 * 1024;
+
+    public abstract BaseDirectory open(File path) throws IOException;
+
+    public BaseDirectory open(String path) throws IOException {
+        return open((path == null) ? null : new File(path));
+    }
+
+    /**
+     * Reads every file of the directory once so that its pages are in the OS file cache before
+     * the first query arrives.
+     *
+     * @param directory the directory to warm up
+     * @return the number of bytes read
+     * @throws IOException when a file cannot be read
+     */
+    public static long warm(BaseDirectory directory) throws IOException {
+        byte[] buffer = new byte[WARM_BUFFER_SIZE];
+        long total = 0;
+        for (String name : directory.listAll()) {
+            IndexInput input = directory.openInput(name, IOContext.READONCE);
+            try {
+                long length = input.length();
+                while (input.getFilePointer() < length) {
+                    int chunk = (int) Math.min(buffer.length, length - input.getFilePointer());
+                    input.readBytes(buffer, 0, chunk);
+                    total += chunk;
+                }
+            } finally {
+                input.close();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return true if every open of this type creates a new, empty index, so it cannot be used to
+     * open an existing index for searching
+     */
+    public boolean isTemporary() {
+        return this == IN_MEMORY || this == HEAP;
+    }
+
+    /**
+     * {@link MMapDirectory} that removes its folder on close. Folders still open when the JVM
+     * exits are removed by a shutdown hook, since a RAM-backed file system would otherwise keep
+     * them until reboot.
+     */
+    private static class TemporaryMMapDirectory extends MMapDirectory {
+
+        private static final Set<Path> OPEN_FOLDERS = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread("lucene-temp-index-cleanup") {
+                public void run() {
+                    for (Path folder : OPEN_FOLDERS) {
+                        delete(folder);
+                    }
+                }
+            });
+        }
+
+        private final Path folder;
+
+        TemporaryMMapDirectory(Path folder) throws IOException {
+            super(folder.toFile());
+            this.folder = folder;
+            OPEN_FOLDERS.add(folder);
+        }
+
+        @Override
+        public synchronized void close() {
+            super.close();
+            delete(folder);
+            OPEN_FOLDERS.remove(folder);
+        }
+
+        private static void delete(Path folder) {
+            File[] files = folder.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            folder.toFile().delete();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads only the named stored fields of a document, keeping the first value of each, and stops
+ * decoding the document as soon as all of them have been seen. Avoids building a full
+ * {@link org.apache.lucene.document.Document} per hit.
+ */
+class FieldSelectingVisitor extends StoredFieldVisitor {
+
+    private final String[] fieldNames;
+    private final Map<String, String> values;
+
+    FieldSelectingVisitor(String... fieldNames) {
+        this.fieldNames = fieldNames;
+        this.values = new HashMap<String, String>(fieldNames.length * 2);
+    }
+
+    @Override
+    public Status needsField(FieldInfo fieldInfo) throws IOException {
+        if (values.size() == fieldNames.length) {
+            return Status.STOP;
+        }
+        for (String name : fieldNames) {
+            if (name.equals(fieldInfo.name)) {
+                return values.containsKey(name) ? Status.NO : Status.YES;
+            }
+        }
+        return Status.NO;
+    }
+
+    @Override
+    public void stringField(FieldInfo fieldInfo, String value) throws IOException {
+        values.put(fieldInfo.name, value);
+    }
+
+    /**
+     * @return the collected values; the visitor must not be reused afterwards
+     */
+    Map<String, String> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Change-detection data kept per indexed file: last modified time, size and an optional content
+ * digest. The values live in doc values next to the document, so checking a file only costs a
+ * term lookup on the {@code path} field rather than loading stored fields.
+ */
+public class FileFingerprint {
+
+    public static final String MODIFIED_FIELD = "modified";
+    public static final String SIZE_FIELD = "size";
+    public static final String CHECKSUM_FIELD = "checksum";
+
+    private static final String CHECKSUM_ALGORITHM = "SHA-1";
+
+    private final long modified;
+    private final long size;
+    private final BytesRef checksum;
+
+    public FileFingerprint(long modified, long size, BytesRef checksum) {
+        this.modified = modified;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Reads the modification time and size of a file from disk. The content digest is left out
+     * until {@link #withChecksum(Path)} is called, since it requires reading the whole file.
+     *
+     * @param file the file
+     */
+    public static FileFingerprint of(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileFingerprint(attrs.lastModifiedTime().toMillis(), attrs.size(), null);
+    }
+
+    public FileFingerprint withChecksum(Path file) throws IOException {
+        return new FileFingerprint(modified, size, checksum(file));
+    }
+
+    /**
+     * Looks up the fingerprint stored for a live document.
+     *
+     * @param reader   the index snapshot to look in
+     * @param pathTerm the unique {@code path} term of the document
+     * @return the stored fingerprint, or null when no live document has this path
+     */
+    public static FileFingerprint lookup(IndexReader reader, Term pathTerm) throws IOException {
+        for (AtomicReaderContext leaf : reader.leaves()) {
+            AtomicReader atomicReader = leaf.reader();
+            DocsEnum docs = atomicReader.termDocsEnum(pathTerm);
+            if (docs == null) {
+                continue;
+            }
+            int doc = docs.nextDoc();
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                continue;
+            }
+
+            NumericDocValues modified = atomicReader.getNumericDocValues(MODIFIED_FIELD);
+            NumericDocValues size = atomicReader.getNumericDocValues(SIZE_FIELD);
+            BinaryDocValues checksum = atomicReader.getBinaryDocValues(CHECKSUM_FIELD);
+            if (modified == null || size == null) {
+                // indexed before fingerprints were recorded
+                return new FileFingerprint(-1, -1, null);
+            }
+            BytesRef digest = (checksum == null) ? null : BytesRef.deepCopyOf(checksum.get(doc));
+            return new FileFingerprint(modified.get(doc), size.get(doc),
+                    (digest == null || digest.length == 0) ? null : digest);
+        }
+        return null;
+    }
+
+    public static BytesRef checksum(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        InputStream in = Files.newInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new BytesRef(digest.digest());
+    }
+
+    public void addTo(Document doc) {
+        doc.add(new NumericDocValuesField(MODIFIED_FIELD, modified));
+        doc.add(new NumericDocValuesField(SIZE_FIELD, size));
+        doc.add(new BinaryDocValuesField(CHECKSUM_FIELD, (checksum == null) ? new BytesRef() : checksum));
+    }
+
+    /**
+     * @return true when modification time and size are unchanged
+     */
+    public boolean sameAttributes(FileFingerprint other) {
+        return modified == other.modified && size == other.size;
+    }
+
+    /**
+     * @return true when both fingerprints carry a digest and the digests are equal
+     */
+    public boolean sameChecksum(FileFingerprint other) {
+        return checksum != null && checksum.equals(other.checksum);
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public BytesRef getChecksum() {
+        return checksum;
+    }
+}
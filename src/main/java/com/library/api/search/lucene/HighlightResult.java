@@ -0,0 +1,42 @@
+package com.library.api.search.lucene;
+
+import java.util.List;
+
+/**
+ * A search hit with the best matching fragments of its content, matched terms wrapped in
+ * {@code <b>} tags.
+ */
+public class HighlightResult {
+
+    private final int docId;
+    private final float score;
+    private final String path;
+    private final List<String> fragments;
+
+    public HighlightResult(int docId, float score, String path, List<String> fragments) {
+        this.docId = docId;
+        this.score = score;
+        this.path = path;
+        this.fragments = fragments;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<String> getFragments() {
+        return fragments;
+    }
+
+    public String toString() {
+        return "HighlightResult[doc:" + docId + ",score:" + score + ",path:" + path + ",fragments:" + fragments + "]";
+    }
+}
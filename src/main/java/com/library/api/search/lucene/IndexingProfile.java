@@ -0,0 +1,121 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+
+/**
+ * Named {@link IndexWriterConfig} tuning presets used by {@link TextFileIndexer}.
+ * <p/>
+ * "bulk-load" buffers a lot of documents in RAM, merges lazily in wide tiers and skips compound
+ * files, trading search-time segment count for ingest throughput; it commits rarely and can finish
+ * with a force-merge. "near-real-time" flushes small segments often and commits frequently so new
+ * documents become durable and visible quickly.
+ * <p/>
+ * {@link #configure} only applies the writer settings. The commit cadence and the force-merge are
+ * not {@link IndexWriterConfig} settings: they are carried out by {@link TextFileIndexer}, which
+ * commits as documents are added and force-merges on close, and by
+ * {@link com.library.api.search.federated.SearchMirror}, which commits as results are ingested.
+ * Other writers configured with a profile must commit themselves.
+ */
+public enum IndexingProfile {
+    DEFAULT("default", IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS,
+            10, 10, 0, true, 0, 0, 0),
+    BULK_LOAD("bulk-load", 256, IndexWriterConfig.DISABLE_AUTO_FLUSH,
+            30, 30, 4, false, 100000, 300, 1),
+    NEAR_REAL_TIME("near-real-time", 32, IndexWriterConfig.DISABLE_AUTO_FLUSH,
+            10, 10, 2, true, 1000, 5, 0);
+
+    private final String name;
+    private final double ramBufferSizeMB;
+    private final int maxBufferedDocs;
+    private final double segmentsPerTier;
+    private final int maxMergeAtOnce;
+    private final int mergeThreads;
+    private final boolean useCompoundFile;
+    private final int commitEveryDocs;
+    private final int commitEverySeconds;
+    private final int forceMergeSegments;
+
+    IndexingProfile(String name, double ramBufferSizeMB, int maxBufferedDocs,
+                    double segmentsPerTier, int maxMergeAtOnce, int mergeThreads, boolean useCompoundFile,
+                    int commitEveryDocs, int commitEverySeconds, int forceMergeSegments) {
+        this.name = name;
+        this.ramBufferSizeMB = ramBufferSizeMB;
+        this.maxBufferedDocs = maxBufferedDocs;
+        this.segmentsPerTier = segmentsPerTier;
+        this.maxMergeAtOnce = maxMergeAtOnce;
+        this.mergeThreads = mergeThreads;
+        this.useCompoundFile = useCompoundFile;
+        this.commitEveryDocs = commitEveryDocs;
+        this.commitEverySeconds = commitEverySeconds;
+        this.forceMergeSegments = forceMergeSegments;
+    }
+
+    /**
+     * @param name a profile name such as "bulk-load" or "near-real-time"
+     * @return the matching profile
+     */
+    public static IndexingProfile forName(String name) {
+        for (IndexingProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("unknown indexing profile: " + name);
+    }
+
+    /**
+     * Applies the RAM buffer, merge policy, merge scheduler and compound-file settings. A new merge
+     * policy and scheduler are created on every call since they cannot be shared between writers.
+     */
+    public IndexWriterConfig configure(IndexWriterConfig config) {
+        config.setRAMBufferSizeMB(ramBufferSizeMB);
+        config.setMaxBufferedDocs(maxBufferedDocs);
+        config.setUseCompoundFile(useCompoundFile);
+
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setSegmentsPerTier(segmentsPerTier);
+        mergePolicy.setMaxMergeAtOnce(maxMergeAtOnce);
+        if (!useCompoundFile) {
+            mergePolicy.setNoCFSRatio(0.0);
+        }
+        config.setMergePolicy(mergePolicy);
+
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        if (mergeThreads > 0) {
+            mergeScheduler.setMaxMergesAndThreads(mergeThreads + 2, mergeThreads);
+        }
+        config.setMergeScheduler(mergeScheduler);
+        return config;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return commit after this many added or updated documents, 0 to never commit by count
+     */
+    public int getCommitEveryDocs() {
+        return commitEveryDocs;
+    }
+
+    /**
+     * @return commit when this many seconds passed since the last commit, 0 to never commit by time
+     */
+    public int getCommitEverySeconds() {
+        return commitEverySeconds;
+    }
+
+    /**
+     * @return number of segments to force-merge down to on close, 0 to skip the force-merge
+     */
+    public int getForceMergeSegments() {
+        return forceMergeSegments;
+    }
+
+    public boolean isPeriodicCommit() {
+        return commitEveryDocs > 0 || commitEverySeconds > 0;
+    }
+}
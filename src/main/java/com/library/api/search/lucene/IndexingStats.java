@@ -0,0 +1,95 @@
+package com.library.api.search.lucene;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters collected during one indexing run. Updated concurrently by the ingestion workers.
+ */
+public class IndexingStats {
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    void documentAdded(long length) {
+        documents.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    void documentUpdated(long length) {
+        updated.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    void documentUnchanged() {
+        unchanged.incrementAndGet();
+    }
+
+    void documentDeleted() {
+        deleted.incrementAndGet();
+    }
+
+    void documentFailed() {
+        failures.incrementAndGet();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getElapsedMillis() {
+        long end = (endNanos == 0) ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    public double getDocumentsPerSecond() {
+        return perSecond(getDocuments() + getUpdated());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    private double perSecond(long count) {
+        long millis = getElapsedMillis();
+        return (millis == 0) ? count : count * 1000.0 / millis;
+    }
+
+    public String toString() {
+        return String.format("%d documents added, %d updated, %d unchanged, %d deleted, %d failed, "
+                        + "%d bytes in %d ms (%.1f docs/sec, %.1f bytes/sec)",
+                getDocuments(), getUpdated(), getUnchanged(), getDeleted(), getFailures(),
+                getBytes(), getElapsedMillis(),
+                getDocumentsPerSecond(), getBytesPerSecond());
+    }
+}
@@ -0,0 +1,54 @@
+package com.library.api.search.lucene;
+
+/**
+ * A keyword-in-context snippet: one span match with the words on either side of it.
+ */
+public class KeywordInContext {
+
+    private final int docId;
+    private final String path;
+    private final int position;
+    private final String left;
+    private final String keyword;
+    private final String right;
+
+    public KeywordInContext(int docId, String path, int position, String left, String keyword, String right) {
+        this.docId = docId;
+        this.path = path;
+        this.position = position;
+        this.left = left;
+        this.keyword = keyword;
+        this.right = right;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return token position of the match within the document
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public String getLeft() {
+        return left;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    public String getRight() {
+        return right;
+    }
+
+    public String toString() {
+        return left + " [" + keyword + "] " + right;
+    }
+}
@@ -0,0 +1,191 @@
+package com.library.api.search.lucene;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Passes markup through unchanged while picking out the {@code <title>} and the
+ * {@code <meta name|property|http-equiv=... content=...>} tags from the characters read. It sits
+ * between the file and the {@link org.apache.lucene.analysis.charfilter.HTMLStripCharFilter}, so
+ * metadata is collected in the same single pass that extracts the visible text. The reader itself
+ * needs constant memory: tags, the title and the number of metadata entries are all capped, and
+ * scanning stops at the end of an HTML head or at the first tag longer than the cap. (The indexer
+ * still buffers the stripped text, which the stored content field requires.)
+ * <p/>
+ * Comments and the bodies of script and style elements are skipped up to their closing
+ * {@code -->}, {@code </script} or {@code </style}, so a {@code <} or {@code >} inside them is not
+ * mistaken for a tag.
+ */
+class MarkupMetadataReader extends FilterReader {
+
+    private static final int MAX_TAG_LENGTH = 4096;
+    private static final int MAX_TITLE_LENGTH = 1024;
+    private static final int MAX_METADATA = 32;
+    private static final Pattern ATTRIBUTE =
+            Pattern.compile("([\\w:.-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))");
+
+    private static final String COMMENT_START = "!--";
+
+    private final StringBuilder tag = new StringBuilder();
+    /** The last characters read while skipping, to recognize {@link #skipUntil}. */
+    private final StringBuilder skipped = new StringBuilder();
+    /** The lower-cased text that ends the comment or element being skipped, or null. */
+    private String skipUntil;
+    private final Map<String, String> metadata = new LinkedHashMap<String, String>();
+    private StringBuilder title;
+    private boolean inTag;
+    private boolean inTitle;
+    private boolean done;
+
+    MarkupMetadataReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c >= 0 && !done) {
+            scan((char) c);
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = super.read(cbuf, off, len);
+        for (int i = off; i < off + n && !done; i++) {
+            scan(cbuf[i]);
+        }
+        return n;
+    }
+
+    private void scan(char c) {
+        if (skipUntil != null) {
+            skip(c);
+        } else if (inTag) {
+            if (c == '>') {
+                inTag = false;
+                onTag(tag);
+                tag.setLength(0);
+            } else if (tag.length() < MAX_TAG_LENGTH) {
+                tag.append(c);
+                if (tag.length() == COMMENT_START.length() && COMMENT_START.contentEquals(tag)) {
+                    inTag = false;
+                    tag.setLength(0);
+                    startSkipping("-->");
+                }
+            } else {
+                // not markup this reader understands; keep what was found so far
+                done = true;
+            }
+        } else if (c == '<') {
+            inTag = true;
+        } else if (inTitle && title.length() < MAX_TITLE_LENGTH) {
+            title.append(c);
+        }
+    }
+
+    private void startSkipping(String end) {
+        skipUntil = end;
+        skipped.setLength(0);
+    }
+
+    private void skip(char c) {
+        if (skipped.length() == skipUntil.length()) {
+            skipped.deleteCharAt(0);
+        }
+        skipped.append(Character.toLowerCase(c));
+        if (skipUntil.contentEquals(skipped)) {
+            if (skipUntil.startsWith("</")) {
+                // the closing tag continues up to its '>', which is handled like any other tag
+                inTag = true;
+                tag.setLength(0);
+                tag.append(skipUntil, 1, skipUntil.length());
+            }
+            skipUntil = null;
+        }
+    }
+
+    private void onTag(CharSequence t) {
+        String name = tagName(t);
+        if ((name.equals("script") || name.equals("style")) && !selfClosing(t)) {
+            startSkipping("</" + name);
+        } else if (name.equals("title") && title == null) {
+            title = new StringBuilder();
+            inTitle = true;
+        } else if (name.equals("/title")) {
+            inTitle = false;
+        } else if (name.equals("meta") && metadata.size() < MAX_METADATA) {
+            addMetadata(t);
+        } else if (name.equals("/head") || name.equals("body")) {
+            inTitle = false;
+            done = true;
+        }
+    }
+
+    private static String tagName(CharSequence t) {
+        int start = 0;
+        while (start < t.length() && Character.isWhitespace(t.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < t.length() && !Character.isWhitespace(t.charAt(end)) && (t.charAt(end) != '/' || end == start)) {
+            end++;
+        }
+        return t.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean selfClosing(CharSequence t) {
+        int end = t.length() - 1;
+        while (end >= 0 && Character.isWhitespace(t.charAt(end))) {
+            end--;
+        }
+        return end >= 0 && t.charAt(end) == '/';
+    }
+
+    private void addMetadata(CharSequence t) {
+        String key = null;
+        String content = null;
+        Matcher m = ATTRIBUTE.matcher(t);
+        while (m.find()) {
+            String attribute = m.group(1).toLowerCase(Locale.ROOT);
+            String value = (m.group(2) != null) ? m.group(2) : (m.group(3) != null) ? m.group(3) : m.group(4);
+            if (attribute.equals("content")) {
+                content = value;
+            } else if (attribute.equals("name") || attribute.equals("property") || attribute.equals("http-equiv")) {
+                key = value.toLowerCase(Locale.ROOT);
+            }
+        }
+        if (key != null && content != null && !metadata.containsKey(key)) {
+            metadata.put(key, StringEscapeUtils.unescapeHtml(content).trim());
+        }
+    }
+
+    /**
+     * @return the text of the first title element with entities decoded and whitespace collapsed,
+     * or null if none was read
+     */
+    String getTitle() {
+        if (title == null) {
+            return null;
+        }
+        String text = StringEscapeUtils.unescapeHtml(title.toString()).replaceAll("\\s+", " ").trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * @return the content of each meta tag by its lower-cased name, property or http-equiv
+     */
+    Map<String, String> getMetadata() {
+        return Collections.unmodifiableMap(metadata);
+    }
+}
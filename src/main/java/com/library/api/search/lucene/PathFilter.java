@@ -0,0 +1,90 @@
+package com.library.api.search.lucene;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Include/exclude rules deciding which files the indexer picks up while walking a directory tree.
+ * Patterns use the {@link java.nio.file.FileSystem#getPathMatcher(String)} syntax, e.g.
+ * {@code "glob:**.txt"} or {@code "regex:.*~"}. A file is accepted when it matches at least
+ * one include rule and no exclude rule; a directory matching an exclude rule is not descended into.
+ */
+public class PathFilter {
+
+    private final List<PathMatcher> includes = new ArrayList<PathMatcher>();
+    private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+
+    /**
+     * @return a filter accepting the file types indexed by default: .htm, .html, .xhtml, .xml and .txt
+     */
+    public static PathFilter defaultFilter() {
+        return new PathFilter().include(new SuffixMatcher(".htm", ".html", ".xhtml", ".xml", ".txt"));
+    }
+
+    public PathFilter include(String syntaxAndPattern) {
+        return include(FileSystems.getDefault().getPathMatcher(syntaxAndPattern));
+    }
+
+    public PathFilter include(PathMatcher matcher) {
+        includes.add(matcher);
+        return this;
+    }
+
+    public PathFilter exclude(String syntaxAndPattern) {
+        return exclude(FileSystems.getDefault().getPathMatcher(syntaxAndPattern));
+    }
+
+    public PathFilter exclude(PathMatcher matcher) {
+        excludes.add(matcher);
+        return this;
+    }
+
+    public boolean accept(Path file) {
+        return matchesAny(includes, file) && !matchesAny(excludes, file);
+    }
+
+    public boolean acceptDirectory(Path directory) {
+        return !matchesAny(excludes, directory);
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Case-insensitive file name suffix match.
+     */
+    public static class SuffixMatcher implements PathMatcher {
+
+        private final String[] suffixes;
+
+        public SuffixMatcher(String... suffixes) {
+            this.suffixes = new String[suffixes.length];
+            for (int i = 0; i < suffixes.length; i++) {
+                this.suffixes[i] = suffixes[i].toLowerCase();
+            }
+        }
+
+        public boolean matches(Path path) {
+            Path name = path.getFileName();
+            if (name == null) {
+                return false;
+            }
+            String filename = name.toString().toLowerCase();
+            for (String suffix : suffixes) {
+                if (filename.endsWith(suffix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
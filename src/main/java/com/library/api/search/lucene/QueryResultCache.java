@@ -0,0 +1,202 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.search.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of {@link SearchHits} for {@link TextFileSearcher}, keyed on the parsed
+ * {@link Query} plus paging parameters and requested fields. Capacity is expressed in an estimate
+ * of retained bytes rather than entry count. All entries belong to one reader version; when a
+ * lookup or insert arrives for a newer version the cache is cleared, so results never outlive the
+ * index state they were computed from. The cache keeps a read-only copy of the hits it is given,
+ * and that copy is shared between the callers it is returned to.
+ */
+public class QueryResultCache {
+
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int RESULT_OVERHEAD = 64;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long usedBytes;
+    private long version = -1;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxBytes upper bound of the estimated memory held by cached results
+     */
+    public QueryResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized SearchHits get(long readerVersion, Query query, int pageSize, String cursor, String[] fields) {
+        checkVersion(readerVersion);
+        Entry entry = (readerVersion == version) ? entries.get(new Key(query, pageSize, cursor, fields)) : null;
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.hits;
+    }
+
+    synchronized void put(long readerVersion, Query query, int pageSize, String cursor, String[] fields,
+                          SearchHits searchHits) {
+        checkVersion(readerVersion);
+        if (readerVersion != version) {
+            // computed on an older reader than the cache already holds
+            return;
+        }
+        long size = estimateSize(searchHits);
+        if (size > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(new Key(query, pageSize, cursor, fields), new Entry(readOnlyCopy(searchHits), size));
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += size;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().size;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void checkVersion(long readerVersion) {
+        if (readerVersion > version) {
+            if (!entries.isEmpty()) {
+                invalidations.addAndGet(entries.size());
+                entries.clear();
+                usedBytes = 0;
+            }
+            version = readerVersion;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private static SearchHits readOnlyCopy(SearchHits searchHits) {
+        List<SearchResult> results = new ArrayList<SearchResult>(searchHits.getResults().size());
+        for (SearchResult r : searchHits.getResults()) {
+            Map<String, String> fields = Collections.unmodifiableMap(new LinkedHashMap<String, String>(r.getFields()));
+            results.add(new SearchResult(r.getDocId(), r.getScore(), fields, r.getShardIndex()));
+        }
+        return new SearchHits(searchHits.getTotalHits(), Collections.unmodifiableList(results), searchHits.getCursor());
+    }
+
+    private static long estimateSize(SearchHits searchHits) {
+        long size = ENTRY_OVERHEAD;
+        if (searchHits.getCursor() != null) {
+            size += STRING_OVERHEAD + 2L * searchHits.getCursor().length();
+        }
+        for (SearchResult result : searchHits.getResults()) {
+            size += RESULT_OVERHEAD;
+            for (Map.Entry<String, String> field : result.getFields().entrySet()) {
+                size += 2 * STRING_OVERHEAD + 2L * field.getValue().length();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of entries dropped because the index changed
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public String toString() {
+        return "QueryResultCache[hits:" + getHits() + ",misses:" + getMisses() + ",evictions:" + getEvictions()
+                + ",invalidations:" + getInvalidations() + ",entries:" + size()
+                + ",bytes:" + getUsedBytes() + "/" + maxBytes + "]";
+    }
+
+    private static class Entry {
+        private final SearchHits hits;
+        private final long size;
+
+        Entry(SearchHits hits, long size) {
+            this.hits = hits;
+            this.size = size;
+        }
+    }
+
+    private static class Key {
+        private final Query query;
+        private final int pageSize;
+        private final String cursor;
+        private final String[] fields;
+        private final int hash;
+
+        Key(Query query, int pageSize, String cursor, String[] fields) {
+            this.query = query;
+            this.pageSize = pageSize;
+            this.cursor = cursor;
+            // copied, so a caller reusing its varargs array cannot change the key
+            this.fields = (fields == null) ? null : fields.clone();
+            this.hash = 31 * (31 * (31 * query.hashCode() + pageSize)
+                    + (cursor == null ? 0 : cursor.hashCode())) + Arrays.hashCode(fields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return pageSize == other.pageSize
+                    && query.equals(other.query)
+                    && (cursor == null ? other.cursor == null : cursor.equals(other.cursor))
+                    && Arrays.equals(fields, other.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
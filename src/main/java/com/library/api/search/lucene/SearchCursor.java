@@ -0,0 +1,63 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for paging through results with
+ * {@link org.apache.lucene.search.IndexSearcher#searchAfter}. It holds the last hit of the previous
+ * page (score, with the doc id as tiebreak) and the version of the reader that produced it, so the
+ * next page can be served from the same point-in-time view of the index.
+ */
+class SearchCursor {
+
+    private static final int ENCODED_LENGTH = 8 + 4 + 4;
+
+    private final long version;
+    private final int doc;
+    private final float score;
+
+    SearchCursor(long version, ScoreDoc last) {
+        this.version = version;
+        this.doc = last.doc;
+        this.score = last.score;
+    }
+
+    private SearchCursor(long version, int doc, float score) {
+        this.version = version;
+        this.doc = doc;
+        this.score = score;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is not a cursor
+     */
+    static SearchCursor decode(String token) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + token, e);
+        }
+        if (buffer.remaining() != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+        return new SearchCursor(buffer.getLong(), buffer.getInt(), buffer.getFloat());
+    }
+
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH);
+        buffer.putLong(version).putInt(doc).putFloat(score);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    ScoreDoc toScoreDoc() {
+        return new ScoreDoc(doc, score);
+    }
+}
@@ -0,0 +1,43 @@
+package com.library.api.search.lucene;
+
+import java.util.List;
+
+/**
+ * The page of {@link SearchResult}s returned by {@link TextFileSearcher} together with the total
+ * number of matching documents.
+ */
+public class SearchHits {
+
+    private final int totalHits;
+    private final List<SearchResult> results;
+    private final String cursor;
+
+    public SearchHits(int totalHits, List<SearchResult> results) {
+        this(totalHits, results, null);
+    }
+
+    public SearchHits(int totalHits, List<SearchResult> results, String cursor) {
+        this.totalHits = totalHits;
+        this.results = results;
+        this.cursor = cursor;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public List<SearchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the token to request the next page with, or null if this was the last page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String toString() {
+        return "SearchHits[total:" + totalHits + ",results:" + results + "]";
+    }
+}
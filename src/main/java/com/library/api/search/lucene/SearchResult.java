@@ -0,0 +1,59 @@
+package com.library.api.search.lucene;
+
+import java.util.Map;
+
+/**
+ * A single search hit: the Lucene doc id, its score and the stored fields that were requested.
+ */
+public class SearchResult {
+
+    private final int docId;
+    private final float score;
+    private final Map<String, String> fields;
+    private final int shardIndex;
+
+    public SearchResult(int docId, float score, Map<String, String> fields) {
+        this(docId, score, fields, -1);
+    }
+
+    public SearchResult(int docId, float score, Map<String, String> fields, int shardIndex) {
+        this.docId = docId;
+        this.score = score;
+        this.fields = fields;
+        this.shardIndex = shardIndex;
+    }
+
+    /**
+     * @return the doc id, local to the shard for results of a {@link ShardedTextFileSearcher}
+     */
+    public int getDocId() {
+        return docId;
+    }
+
+    /**
+     * @return the shard the hit came from, or -1 for an unsharded index
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * @param name a stored field requested in the search
+     * @return the first stored value of the field, or null if the document has none
+     */
+    public String get(String name) {
+        return fields.get(name);
+    }
+
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    public String toString() {
+        return "SearchResult[doc:" + docId + ",shard:" + shardIndex + ",score:" + score + ",fields:" + fields + "]";
+    }
+}
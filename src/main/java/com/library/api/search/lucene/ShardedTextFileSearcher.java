@@ -0,0 +1,160 @@
+package com.library.api.search.lucene;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Searches an index sharded by {@link TextFileIndexer} across all shards in parallel and merges
+ * the per-shard top hits with {@link TopDocs#merge}.
+ * <p/>
+ * Shards are queried on {@code shardExecutor}; each shard can additionally search its segments in
+ * parallel on {@code segmentExecutor}. Use two different executors: a shard task blocks while its
+ * segment tasks run, so sharing one bounded pool can deadlock.
+ */
+public class ShardedTextFileSearcher {
+
+    private final TextFileSearcher[] shards;
+    private final ExecutorService shardExecutor;
+
+    /**
+     * @param indexDir        the folder holding the shard folders
+     * @param shardCount      number of shards the index was built with
+     * @param directoryType   how the index files are accessed
+     * @param shardExecutor   runs the per-shard searches
+     * @param segmentExecutor if not null, segments of each shard are searched in parallel on it
+     * @throws IOException when exception opening a shard
+     */
+    public ShardedTextFileSearcher(String indexDir, int shardCount, DirectoryType directoryType,
+                                   ExecutorService shardExecutor, ExecutorService segmentExecutor) throws IOException {
+        this.shards = new TextFileSearcher[shardCount];
+        this.shardExecutor = shardExecutor;
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new TextFileSearcher(directoryType.open(TextFileIndexer.shardDirectory(indexDir, i)),
+                    false, segmentExecutor);
+        }
+    }
+
+    /**
+     * Creates a near-real-time searcher over the live shard writers of an indexer.
+     *
+     * @param indexer         the sharded indexer
+     * @param refreshMillis   interval of the background refresh, 0 to only refresh on demand
+     * @param shardExecutor   runs the per-shard searches
+     * @param segmentExecutor if not null, segments of each shard are searched in parallel on it
+     * @throws IOException when exception opening a reader
+     */
+    public ShardedTextFileSearcher(TextFileIndexer indexer, long refreshMillis,
+                                   ExecutorService shardExecutor, ExecutorService segmentExecutor) throws IOException {
+        IndexWriter[] writers = indexer.getIndexWriters();
+        this.shards = new TextFileSearcher[writers.length];
+        this.shardExecutor = shardExecutor;
+        for (int i = 0; i < writers.length; i++) {
+            shards[i] = new TextFileSearcher(writers[i], refreshMillis, segmentExecutor);
+        }
+    }
+
+    /**
+     * Runs the query on every shard concurrently and merges the top {@code maxhits} by score.
+     *
+     * @param searchQuery query in {@link org.apache.lucene.queryparser.classic.QueryParser} syntax
+     * @param maxhits     maximum number of results to return
+     * @param fields      stored fields to load for each hit
+     * @return the merged hits; each result carries the shard it came from
+     */
+    public SearchHits search(final String searchQuery, final int maxhits, final String... fields) {
+        List<Future<SearchHits>> futures = new ArrayList<Future<SearchHits>>(shards.length);
+        for (final TextFileSearcher shard : shards) {
+            futures.add(shardExecutor.submit(new Callable<SearchHits>() {
+                public SearchHits call() {
+                    return shard.search(searchQuery, maxhits, fields);
+                }
+            }));
+        }
+
+        try {
+            SearchHits[] shardHits = new SearchHits[shards.length];
+            TopDocs[] shardTopDocs = new TopDocs[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                shardHits[i] = futures.get(i).get();
+                shardTopDocs[i] = toTopDocs(shardHits[i]);
+            }
+
+            TopDocs merged = TopDocs.merge(null, maxhits, shardTopDocs);
+
+            // merge keeps the per-shard order, so each shard's results are consumed front to back
+            int[] next = new int[shards.length];
+            List<SearchResult> results = new ArrayList<SearchResult>(merged.scoreDocs.length);
+            for (ScoreDoc scoreDoc : merged.scoreDocs) {
+                SearchResult result = shardHits[scoreDoc.shardIndex].getResults().get(next[scoreDoc.shardIndex]++);
+                results.add(new SearchResult(result.getDocId(), result.getScore(), result.getFields(),
+                        scoreDoc.shardIndex));
+            }
+            return new SearchHits(merged.totalHits, results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            // no interrupt: it would close the NIOFSDirectory channel a shard search is reading from
+            for (Future<SearchHits> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static TopDocs toTopDocs(SearchHits hits) {
+        List<SearchResult> results = hits.getResults();
+        ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+        float maxScore = Float.NaN;
+        for (int i = 0; i < scoreDocs.length; i++) {
+            SearchResult result = results.get(i);
+            scoreDocs[i] = new ScoreDoc(result.getDocId(), result.getScore());
+            maxScore = (i == 0) ? result.getScore() : Math.max(maxScore, result.getScore());
+        }
+        return new TopDocs(hits.getTotalHits(), scoreDocs, maxScore);
+    }
+
+    /**
+     * Refreshes every shard.
+     *
+     * @return true if all shards are current after this call
+     * @throws IOException when exception reopening a reader
+     */
+    public boolean refresh() throws IOException {
+        boolean current = true;
+        for (TextFileSearcher shard : shards) {
+            current &= shard.refresh();
+        }
+        return current;
+    }
+
+    public void close() throws IOException {
+        IOException failure = null;
+        for (TextFileSearcher shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+}
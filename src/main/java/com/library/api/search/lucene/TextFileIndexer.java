@@ -1,30 +1,59 @@
 package com.library.api.search.lucene;
 
+import com.library.api.search.metrics.Gauge;
+import com.library.api.search.metrics.MetricsRegistry;
+import com.library.api.search.metrics.NoopMetricsRegistry;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilter;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.BaseDirectory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This terminal application creates an Apache Lucene index in a folder and adds files into this index
@@ -32,13 +61,41 @@ import java.util.ArrayList;
  */
 public class TextFileIndexer {
 
+    private static final Logger LOG = LoggerFactory.getLogger(TextFileIndexer.class);
+    private static final int QUEUE_CAPACITY_PER_WORKER = 64;
+    private static final long ENQUEUE_POLL_MILLIS = 100;
+    private static final Path END_OF_QUEUE = Paths.get("");
+
+    /**
+     * Type of the {@code content} field: stored for highlighting, indexed with positions for span
+     * queries, and with term vectors holding offsets for {@link TextFileSearcher#highlightSearch}
+     * and {@link TextFileSearcher#searchSpan}. Other writers of searchable documents use it too.
+     */
+    public static final FieldType CONTENT_FIELD_TYPE = contentFieldType();
+
     private static StandardAnalyzer analyzer = new StandardAnalyzer();
-    private IndexWriter writer;
-    private ArrayList<File> queue = new ArrayList<File>();
-    private BaseDirectory baseDirectory;
+    private IndexWriter[] writers;
+    private BaseDirectory[] baseDirectories;
+    private PathFilter pathFilter = PathFilter.defaultFilter();
+    private boolean incremental = false;
+    private boolean checksumEnabled = false;
+    private IndexingProfile profile;
+    private boolean forceMergeOnClose = false;
+    private final AtomicLong docsSinceCommit = new AtomicLong();
+    private final AtomicBoolean committing = new AtomicBoolean();
+    private volatile long lastCommitNanos = System.nanoTime();
+    private volatile MetricsRegistry metrics = NoopMetricsRegistry.INSTANCE;
+    private boolean markupStripping = true;
+    private final boolean ownsDirectories;
 
+    /**
+     * Creates an indexer over a temporary off-heap, memory-mapped index. The index is deleted by
+     * {@link #closeIndex()}, so search it through a near-real-time searcher before closing.
+     *
+     * @throws java.io.IOException when exception creating index.
+     */
     public TextFileIndexer() throws IOException {
-        this(new RAMDirectory());
+        this(new BaseDirectory[]{DirectoryType.IN_MEMORY.open((File) null)}, IndexingProfile.DEFAULT, true);
     }
 
     /**
@@ -50,105 +107,526 @@ public class TextFileIndexer {
     public TextFileIndexer(String indexDir) throws IOException {
         // the boolean true parameter means to create a new index everytime,
         // potentially overwriting any existing files there.
-        this(FSDirectory.open(new File(indexDir)));
+        this(indexDir, IndexingProfile.DEFAULT);
+    }
+
+    public TextFileIndexer(String indexDir, IndexingProfile profile) throws IOException {
+        this(new BaseDirectory[]{FSDirectory.open(new File(indexDir))}, profile, true);
+    }
+
+    public TextFileIndexer(String indexDir, DirectoryType directoryType, IndexingProfile profile) throws IOException {
+        this(new BaseDirectory[]{directoryType.open(indexDir)}, profile, true);
     }
 
     public TextFileIndexer(BaseDirectory baseDirectory) throws IOException {
-        IndexWriterConfig config = new IndexWriterConfig(Version.LATEST, analyzer);
-        this.writer = new IndexWriter(baseDirectory, config);
-        this.baseDirectory = baseDirectory;
+        this(baseDirectory, IndexingProfile.DEFAULT);
+    }
+
+    /**
+     * @param baseDirectory the directory holding the index
+     * @param profile       the writer tuning and commit cadence to use
+     * @throws java.io.IOException when exception creating index.
+     */
+    public TextFileIndexer(BaseDirectory baseDirectory, IndexingProfile profile) throws IOException {
+        this(new BaseDirectory[]{baseDirectory}, profile);
+    }
+
+    /**
+     * Creates a sharded index: one sub-index per {@link #shardDirectory(String, int) shard folder}
+     * under {@code indexDir}, each with its own writer. Documents are routed by the hash of their
+     * path, so flushing and merging proceed independently per shard.
+     *
+     * @param indexDir      the folder holding the shard folders
+     * @param shards        number of shards
+     * @param directoryType how the index files are accessed
+     * @param profile       the writer tuning and commit cadence to use for every shard
+     * @throws java.io.IOException when exception creating index.
+     */
+    public TextFileIndexer(String indexDir, int shards, DirectoryType directoryType, IndexingProfile profile)
+            throws IOException {
+        this(openShards(indexDir, shards, directoryType), profile, true);
+    }
+
+    /**
+     * @param baseDirectories one directory per shard
+     * @param profile         the writer tuning and commit cadence to use for every shard
+     * @throws java.io.IOException when exception creating index.
+     */
+    public TextFileIndexer(BaseDirectory[] baseDirectories, IndexingProfile profile) throws IOException {
+        this(baseDirectories, profile, false);
+    }
+
+    /**
+     * @param ownsDirectories true if the directories were opened by this indexer and are closed
+     *                        with it; directories passed in by the caller stay open
+     */
+    private TextFileIndexer(BaseDirectory[] baseDirectories, IndexingProfile profile, boolean ownsDirectories)
+            throws IOException {
+        if (baseDirectories.length == 0) {
+            throw new IllegalArgumentException("at least one directory is required");
+        }
+        this.writers = new IndexWriter[baseDirectories.length];
+        for (int i = 0; i < baseDirectories.length; i++) {
+            IndexWriterConfig config = profile.configure(new IndexWriterConfig(Version.LATEST, analyzer));
+            this.writers[i] = new IndexWriter(baseDirectories[i], config);
+        }
+        this.baseDirectories = baseDirectories;
+        this.profile = profile;
+        this.ownsDirectories = ownsDirectories;
+    }
+
+    static BaseDirectory[] openShards(String indexDir, int shards, DirectoryType directoryType) throws IOException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        BaseDirectory[] directories = new BaseDirectory[shards];
+        for (int i = 0; i < shards; i++) {
+            directories[i] = directoryType.open(shardDirectory(indexDir, i));
+        }
+        return directories;
     }
 
     /**
-     * Indexes a file or directory
+     * @return the folder of shard {@code shard} of a sharded index in {@code indexDir}
+     */
+    public static String shardDirectory(String indexDir, int shard) {
+        return new File(indexDir, "shard-" + shard).getPath();
+    }
+
+    /**
+     * @return the shard a document with this path is routed to
+     */
+    public static int shardFor(String path, int shards) {
+        return (path.hashCode() & Integer.MAX_VALUE) % shards;
+    }
+
+    private IndexWriter writerFor(String path) {
+        return writers[shardFor(path, writers.length)];
+    }
+
+    /**
+     * Indexes a file or directory on a single ingestion worker.
      *
      * @param fileName the name of a text file or a folder we wish to add to the index
      * @throws java.io.IOException when exception
      */
-    public void indexFileOrDirectory(String fileName) throws IOException {
-        //===================================================
-        //gets the list of files in a folder (if user has submitted
-        //the name of a folder) or gets a single file name (is user
-        //has submitted only the file name)
-        //===================================================
-        addFiles(new File(fileName));
+    public IndexingStats indexFileOrDirectory(String fileName) throws IOException {
+        return indexFileOrDirectory(fileName, 1);
+    }
+
+    /**
+     * Indexes a file or directory using a bounded producer/consumer pipeline. The caller's thread
+     * walks the file tree lazily and streams each file accepted by the {@link PathFilter} to a pool
+     * of workers which read, analyze and add them to the shared {@link IndexWriter}. The hand-off
+     * queue is bounded, so the walker blocks when the workers fall behind and memory use does not
+     * grow with the number of files. If a worker dies, for example with an {@link OutOfMemoryError}
+     * on a huge file, the walk stops and the run fails instead of waiting on a queue nobody drains.
+     * <p/>
+     * In {@link #setIncremental(boolean) incremental} mode files whose {@link FileFingerprint} is
+     * unchanged are skipped, changed files replace their previous document, and documents under
+     * {@code fileName} whose files no longer exist are deleted.
+     *
+     * @param fileName the name of a text file or a folder we wish to add to the index
+     * @param threads  number of ingestion workers
+     * @return throughput counters for this run
+     * @throws java.io.IOException when exception, or when an ingestion worker failed
+     */
+    public IndexingStats indexFileOrDirectory(String fileName, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
 
-        int originalNumDocs = writer.numDocs();
+        final BlockingQueue<Path> queue = new ArrayBlockingQueue<Path>(threads * QUEUE_CAPACITY_PER_WORKER);
+        final IndexingStats stats = new IndexingStats();
+        final AtomicReference<Throwable> workerFailure = new AtomicReference<Throwable>();
+        final IndexReader snapshot = incremental ? openSnapshot() : null;
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Path root = Paths.get(fileName);
 
-        for (File f : queue) {
-            FileReader fr = null;
-            try {
-                Document doc = new Document();
+        try {
+            for (int i = 0; i < threads; i++) {
+                workers.execute(new Runnable() {
+                    public void run() {
+                        consume(queue, snapshot, stats, workerFailure);
+                    }
+                });
+            }
 
-                // add contents of file
-                fr = new FileReader(f);
-                //doc.add(new TextField("contents", fr));
-                doc.add(createContentField(fr));
-                doc.add(new StringField("path", f.getPath(), Field.Store.YES));
-                doc.add(new StringField("filename", f.getName(), Field.Store.YES));
-                writer.addDocument(doc);
-                System.out.println("Added: " + f);
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.out.println("Could not add: " + f);
+            try {
+                walkFiles(root, queue, workerFailure);
             } finally {
-                fr.close();
+                for (int i = 0; i < threads && enqueue(queue, END_OF_QUEUE, workerFailure); i++) {
+                    // one end marker per worker
+                }
+            }
+
+            if (workerFailure.get() == null) {
+                workers.shutdown();
+            } else {
+                // the end markers may not all have been queued; wake the surviving workers instead
+                workers.shutdownNow();
+            }
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            checkWorkers(workerFailure);
+
+            if (snapshot != null) {
+                deleteMissing(snapshot, root, stats);
+            }
+            if (profile.isPeriodicCommit()) {
+                commit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Indexing of " + fileName + " was interrupted");
+        } finally {
+            workers.shutdownNow();
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+
+        stats.finish();
+        LOG.info("Indexed {}: {}", fileName, stats);
+        return stats;
+    }
+
+    private void consume(BlockingQueue<Path> queue, IndexReader snapshot, IndexingStats stats,
+                         AtomicReference<Throwable> failure) {
+        try {
+            Path f;
+            while ((f = queue.take()) != END_OF_QUEUE) {
+                indexFile(f, snapshot, stats);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            // indexFile handles exceptions per file; this is an Error such as OutOfMemoryError
+            failure.compareAndSet(null, t);
+            LOG.error("Indexing worker failed", t);
+        }
+    }
+
+    /**
+     * Hands a file to the workers, waiting while the queue is full unless a worker has failed.
+     *
+     * @return false if a worker failed, in which case the file was not queued
+     */
+    private static boolean enqueue(BlockingQueue<Path> queue, Path file, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        while (!queue.offer(file, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private static void checkWorkers(AtomicReference<Throwable> failure) throws IOException {
+        if (failure.get() != null) {
+            throw new IOException("Indexing worker failed", failure.get());
+        }
+    }
 
-        int newNumDocs = writer.numDocs();
-        System.out.println("");
-        System.out.println("************************");
-        System.out.println((newNumDocs - originalNumDocs) + " documents added.");
-        System.out.println("************************");
+    private void indexFile(Path f, IndexReader snapshot, IndexingStats stats) {
+        FileReader fr = null;
+        try {
+            Term pathTerm = new Term("path", f.toString());
+            FileFingerprint fingerprint = FileFingerprint.of(f);
+            FileFingerprint previous = (snapshot == null) ? null : FileFingerprint.lookup(snapshot, pathTerm);
 
-        queue.clear();
+            if (previous != null && fingerprint.sameAttributes(previous)) {
+                stats.documentUnchanged();
+                return;
+            }
+            if (checksumEnabled) {
+                fingerprint = fingerprint.withChecksum(f);
+                if (previous != null && fingerprint.sameChecksum(previous)) {
+                    // touched but not modified: refresh the timestamp without re-analyzing
+                    writerFor(pathTerm.text()).updateNumericDocValue(pathTerm, FileFingerprint.MODIFIED_FIELD, fingerprint.getModified());
+                    stats.documentUnchanged();
+                    return;
+                }
+            }
+
+            Document doc = new Document();
+
+            // add contents of file
+            long start = System.nanoTime();
+            fr = new FileReader(f.toFile());
+            //doc.add(new TextField("contents", fr));
+            if (markupStripping && isMarkup(f)) {
+                addMarkupFields(doc, fr);
+            } else {
+                doc.add(createContentField(fr));
+            }
+            metrics.recordTime("indexer.file.read", System.nanoTime() - start);
+            metrics.recordValue("indexer.document.bytes", fingerprint.getSize());
+            doc.add(new StringField("path", f.toString(), Field.Store.YES));
+            doc.add(new StringField("filename", f.getFileName().toString(), Field.Store.YES));
+            fingerprint.addTo(doc);
+
+            // the writer analyzes the document inside addDocument, so this times analysis and inversion
+            start = System.nanoTime();
+            if (previous == null) {
+                writerFor(pathTerm.text()).addDocument(doc);
+                metrics.recordTime("indexer.document.add", System.nanoTime() - start);
+                stats.documentAdded(fingerprint.getSize());
+                LOG.debug("Added: {}", f);
+            } else {
+                writerFor(pathTerm.text()).updateDocument(pathTerm, doc);
+                metrics.recordTime("indexer.document.update", System.nanoTime() - start);
+                stats.documentUpdated(fingerprint.getSize());
+                LOG.debug("Updated: {}", f);
+            }
+            maybeCommit();
+        } catch (Exception e) {
+            stats.documentFailed();
+            LOG.warn("Could not add: " + f, e);
+        } finally {
+            if (fr != null) {
+                try {
+                    fr.close();
+                } catch (IOException e) {
+                    LOG.warn("Could not close: " + f, e);
+                }
+            }
+        }
     }
 
+    /**
+     * The content is read into memory because Lucene cannot store a {@link java.io.Reader} valued
+     * field, and the stored text is what highlighting builds its fragments from.
+     */
     private Field createContentField(FileReader reader) throws IOException {
+        return new Field("content", IOUtils.toString(reader), CONTENT_FIELD_TYPE);
+    }
 
+    /**
+     * Indexes only the visible text of an HTML or XML file: tags, attributes, comments and the
+     * contents of script and style elements are dropped by an {@link HTMLStripCharFilter} as the
+     * file streams through, and entities are decoded. The title goes into the {@code title} field
+     * and each meta tag into a {@code meta.<name>} field, both collected in the same pass. As in
+     * {@link #createContentField}, the stripped text is read into memory for the stored field; only
+     * the metadata collection runs in constant memory.
+     */
+    private void addMarkupFields(Document doc, FileReader reader) throws IOException {
+        MarkupMetadataReader markup = new MarkupMetadataReader(reader);
+        doc.add(new Field("content", IOUtils.toString(new HTMLStripCharFilter(markup)), CONTENT_FIELD_TYPE));
+        if (markup.getTitle() != null) {
+            doc.add(new TextField("title", markup.getTitle(), Field.Store.YES));
+        }
+        for (Map.Entry<String, String> meta : markup.getMetadata().entrySet()) {
+            doc.add(new TextField("meta." + meta.getKey(), meta.getValue(), Field.Store.YES));
+        }
+    }
+
+    private static boolean isMarkup(Path f) {
+        String name = f.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".htm") || name.endsWith(".html") || name.endsWith(".xhtml") || name.endsWith(".xml");
+    }
+
+    private static FieldType contentFieldType() {
         FieldType fieldType = new FieldType();
         fieldType.setStoreTermVectors(true);
         fieldType.setStoreTermVectorPositions(true);
         fieldType.setStoreTermVectorOffsets(true);
         fieldType.setIndexed(true);
         fieldType.setTokenized(true);
-        fieldType.setIndexOptions(FieldInfo.IndexOptions.DOCS_AND_FREQS);
+        fieldType.setIndexOptions(FieldInfo.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
         fieldType.setStored(true);
         fieldType.setOmitNorms(false);
         fieldType.setStoreTermVectorPayloads(false);
-        return new Field("content", reader, fieldType);
+        fieldType.freeze();
+        return fieldType;
     }
 
-    private void addFiles(File file) {
+    private void walkFiles(Path root, final BlockingQueue<Path> queue, final AtomicReference<Throwable> failure)
+            throws IOException, InterruptedException {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return pathFilter.acceptDirectory(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && pathFilter.accept(file)) {
+                        checkWorkers(failure);
+                        try {
+                            if (!enqueue(queue, file, failure)) {
+                                checkWorkers(failure);
+                            }
+                        } catch (InterruptedException e) {
+                            throw new WalkInterruptedException(e);
+                        }
+                    } else {
+                        LOG.debug("Skipped {}", file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOG.warn(file + " could not be read", e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (WalkInterruptedException e) {
+            throw (InterruptedException) e.getCause();
+        }
+    }
+
+    /**
+     * Deletes the documents under {@code root} whose files are gone. Walks the {@code path} terms
+     * of the snapshot taken at the start of the run, so no set of visited files has to be kept.
+     */
+    private void deleteMissing(IndexReader snapshot, Path root, IndexingStats stats) throws IOException {
+        Terms terms = MultiFields.getTerms(snapshot, "path");
+        if (terms == null) {
+            return;
+        }
 
-        if (!file.exists()) {
-            System.err.println(file + " does not exist.");
+        String rootPath = root.toString();
+        String rootPrefix = rootPath.endsWith(root.getFileSystem().getSeparator())
+                ? rootPath : rootPath + root.getFileSystem().getSeparator();
+        BytesRef prefix = new BytesRef(rootPath);
+        TermsEnum termsEnum = terms.iterator(null);
+        if (termsEnum.seekCeil(prefix) == TermsEnum.SeekStatus.END) {
+            return;
         }
-        if (file.isDirectory()) {
-            for (File f : file.listFiles()) {
-                addFiles(f);
+
+        BytesRef term = termsEnum.term();
+        do {
+            if (!StringHelper.startsWith(term, prefix)) {
+                break;
+            }
+            String path = term.utf8ToString();
+            if ((path.equals(rootPath) || path.startsWith(rootPrefix)) && !Files.exists(Paths.get(path))) {
+                writerFor(path).deleteDocuments(new Term("path", path));
+                stats.documentDeleted();
+                LOG.debug("Deleted: {}", path);
             }
-        } else {
-            String filename = file.getName().toLowerCase();
+        } while ((term = termsEnum.next()) != null);
+    }
 
-            // Only index text files
-            if (filename.endsWith(".htm") || filename.endsWith(".html") ||
-                    filename.endsWith(".xml") || filename.endsWith(".txt")) {
-                queue.add(file);
-            } else {
-                System.out.println("Skipped " + filename);
+    /**
+     * Carries an interrupt out of {@link FileVisitor} callbacks, which may only throw IOException.
+     */
+    private static class WalkInterruptedException extends IOException {
+        WalkInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Commits once the profile's document count or time interval since the last commit is reached.
+     * Only one worker commits at a time; the others keep adding documents meanwhile.
+     */
+    private void maybeCommit() throws IOException {
+        long docs = docsSinceCommit.incrementAndGet();
+        boolean due = (profile.getCommitEveryDocs() > 0 && docs >= profile.getCommitEveryDocs())
+                || (profile.getCommitEverySeconds() > 0
+                && System.nanoTime() - lastCommitNanos >= TimeUnit.SECONDS.toNanos(profile.getCommitEverySeconds()));
+
+        if (due && committing.compareAndSet(false, true)) {
+            try {
+                commit();
+            } finally {
+                committing.set(false);
             }
         }
     }
 
     /**
-     * Close the index.
+     * Commits all pending changes so they survive a crash.
+     *
+     * @throws java.io.IOException when exception committing
+     */
+    public void commit() throws IOException {
+        docsSinceCommit.set(0);
+        long start = lastCommitNanos = System.nanoTime();
+        for (IndexWriter writer : writers) {
+            writer.commit();
+        }
+        metrics.recordTime("indexer.commit", System.nanoTime() - start);
+    }
+
+    /**
+     * Close the index. When {@link #setForceMergeOnClose(boolean)} is enabled and the profile
+     * defines a target segment count, the index is force-merged first. Directories the indexer
+     * opened itself are closed too, which deletes a temporary {@link DirectoryType#IN_MEMORY}
+     * index; directories passed to the constructor are left open.
      *
      * @throws java.io.IOException when exception closing
      */
     public void closeIndex() throws IOException {
-        writer.close();
+        try {
+            for (IndexWriter writer : writers) {
+                if (forceMergeOnClose && profile.getForceMergeSegments() > 0) {
+                    writer.forceMerge(profile.getForceMergeSegments());
+                }
+                writer.close();
+            }
+        } finally {
+            if (ownsDirectories) {
+                for (BaseDirectory directory : baseDirectories) {
+                    directory.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param forceMergeOnClose true to force-merge down to the profile's segment count on close
+     */
+    public void setForceMergeOnClose(boolean forceMergeOnClose) {
+        this.forceMergeOnClose = forceMergeOnClose;
+    }
+
+    /**
+     * Records per-document read and add times, document sizes and commit times, and exposes the
+     * RAM used by buffered documents ("indexer.ram.bytes") and the number of buffered documents
+     * ("indexer.ram.docs") as gauges.
+     *
+     * @param metrics the registry, or null to stop recording
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = (metrics == null) ? NoopMetricsRegistry.INSTANCE : metrics;
+        this.metrics.registerGauge("indexer.ram.bytes", new Gauge() {
+            public long getValue() {
+                long bytes = 0;
+                for (IndexWriter writer : writers) {
+                    bytes += writer.ramSizeInBytes();
+                }
+                return bytes;
+            }
+        });
+        this.metrics.registerGauge("indexer.ram.docs", new Gauge() {
+            public long getValue() {
+                long docs = 0;
+                for (IndexWriter writer : writers) {
+                    docs += writer.numRamDocs();
+                }
+                return docs;
+            }
+        });
+    }
+
+    /**
+     * @param markupStripping true to index only the visible text, title and meta tags of
+     *                        .htm/.html/.xhtml/.xml files (the default), false to index their raw markup
+     */
+    public void setMarkupStripping(boolean markupStripping) {
+        this.markupStripping = markupStripping;
+    }
+
+    public boolean isMarkupStripping() {
+        return markupStripping;
+    }
+
+    public IndexingProfile getProfile() {
+        return this.profile;
     }
 
     private static BooleanQuery getBooleanQuery(String... queries) {
@@ -166,7 +644,103 @@ public class TextFileIndexer {
         return Files.readAllBytes(path);
     }
 
+    /**
+     * Replaces the include/exclude rules used when walking directories.
+     *
+     * @param pathFilter the rules deciding which files get indexed
+     */
+    public void setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    public PathFilter getPathFilter() {
+        return this.pathFilter;
+    }
+
+    /**
+     * Enables incremental indexing: unchanged files are skipped, changed files are replaced via
+     * {@link IndexWriter#updateDocument} keyed on {@code path}, and deleted files are removed.
+     *
+     * @param incremental true to compare each file against the fingerprint stored in the index
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+
+    /**
+     * When enabled, files whose modification time or size changed are digested and only
+     * re-indexed if their content actually differs.
+     *
+     * @param checksumEnabled true to store and compare a content digest
+     */
+    public void setChecksumEnabled(boolean checksumEnabled) {
+        this.checksumEnabled = checksumEnabled;
+    }
+
+    public boolean isChecksumEnabled() {
+        return this.checksumEnabled;
+    }
+
+    /**
+     * Opens a near-real-time view over all shards, used to look up fingerprints.
+     */
+    private IndexReader openSnapshot() throws IOException {
+        if (writers.length == 1) {
+            return DirectoryReader.open(writers[0], true);
+        }
+        IndexReader[] readers = new IndexReader[writers.length];
+        try {
+            for (int i = 0; i < writers.length; i++) {
+                readers[i] = DirectoryReader.open(writers[i], true);
+            }
+        } catch (IOException e) {
+            for (IndexReader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            throw e;
+        }
+        return new MultiReader(readers);
+    }
+
+    /**
+     * @return the live writer of an unsharded index, for opening near-real-time readers on it
+     * @throws IllegalStateException when the index is sharded; use {@link #getIndexWriters()}
+     */
+    public IndexWriter getIndexWriter() {
+        requireSingleShard();
+        return this.writers[0];
+    }
+
+    /**
+     * @return the live writer of every shard
+     */
+    public IndexWriter[] getIndexWriters() {
+        return this.writers;
+    }
+
+    public BaseDirectory[] getBaseDirectories() {
+        return this.baseDirectories;
+    }
+
+    /**
+     * @return the directory of an unsharded index
+     * @throws IllegalStateException when the index is sharded; use {@link #getBaseDirectories()}
+     */
     public BaseDirectory getBaseDirectory() {
-        return this.baseDirectory;
+        requireSingleShard();
+        return this.baseDirectories[0];
+    }
+
+    private void requireSingleShard() {
+        if (writers.length > 1) {
+            throw new IllegalStateException("index has " + writers.length
+                    + " shards; search it with ShardedTextFileSearcher");
+        }
     }
 }
@@ -1,82 +1,372 @@
 package com.library.api.search.lucene;
 
-import org.apache.lucene.analysis.TokenStream;
+import com.library.api.search.metrics.Gauge;
+import com.library.api.search.metrics.MetricsRegistry;
+import com.library.api.search.metrics.NoopMetricsRegistry;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
-import org.apache.lucene.search.highlight.*;
 import org.apache.lucene.search.spans.SpanTermQuery;
 import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.search.vectorhighlight.FastVectorHighlighter;
+import org.apache.lucene.search.vectorhighlight.FieldQuery;
 import org.apache.lucene.store.BaseDirectory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Bits;
-import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class TextFileSearcher {
 
+    private static final Logger LOG = LoggerFactory.getLogger(TextFileSearcher.class);
+
     public static final int MAXIMUM_NUMBER_OF_HITS = 5;
+    private static final String[] DEFAULT_FIELDS = {"path"};
+    private static final int CURSOR_MAX_AGE_SECONDS = 600;
+    private static final int DEFAULT_FRAGMENT_COUNT = 4;
+    private static final int DEFAULT_FRAGMENT_SIZE = 100;
+    private static final int DEFAULT_SPAN_WINDOW = 2;
 
     private static StandardAnalyzer analyzer = new StandardAnalyzer();
-    private IndexReader reader;
-    private IndexSearcher searcher;
+    private static FastVectorHighlighter highlighter = new FastVectorHighlighter();
+    private SearcherManager searcherManager;
+    private SearcherLifetimeManager searcherLifetimeManager = new SearcherLifetimeManager();
+    private QueryResultCache resultCache;
+    private ScheduledExecutorService refresher;
+    private volatile MetricsRegistry metrics = NoopMetricsRegistry.INSTANCE;
 
     public TextFileSearcher(String indexDir) throws IOException {
         this(FSDirectory.open(new File(indexDir)));
     }
 
+    /**
+     * @param indexDir      the folder holding the index
+     * @param directoryType how the index files are accessed
+     * @param warm          true to pull the index files into the OS file cache before serving
+     * @throws IOException when exception opening the index
+     * @throws IllegalArgumentException when the type is {@link DirectoryType#IN_MEMORY} or {@link DirectoryType#HEAP}
+     */
+    public TextFileSearcher(String indexDir, DirectoryType directoryType, boolean warm) throws IOException {
+        this(openExisting(indexDir, directoryType), warm);
+    }
+
+    private static BaseDirectory openExisting(String indexDir, DirectoryType directoryType) throws IOException {
+        if (directoryType.isTemporary()) {
+            throw new IllegalArgumentException(directoryType + " always opens a new empty index; "
+                    + "search it through the indexer's directory or a near-real-time searcher");
+        }
+        return directoryType.open(indexDir);
+    }
+
     public TextFileSearcher(BaseDirectory baseDirectory) throws IOException {
-        this.reader = DirectoryReader.open(baseDirectory);
-        this.searcher = new IndexSearcher(reader);
+        this(baseDirectory, false);
+    }
+
+    public TextFileSearcher(BaseDirectory baseDirectory, boolean warm) throws IOException {
+        this(baseDirectory, warm, null);
+    }
+
+    /**
+     * @param baseDirectory the directory holding the index
+     * @param warm          true to pull the index files into the OS file cache before serving
+     * @param executor      if not null, segments are searched in parallel on this executor
+     * @throws IOException when exception opening the index
+     */
+    public TextFileSearcher(BaseDirectory baseDirectory, boolean warm, ExecutorService executor) throws IOException {
+        if (warm) {
+            DirectoryType.warm(baseDirectory);
+        }
+        this.searcherManager = new SearcherManager(baseDirectory, searcherFactory(executor));
+    }
+
+    /**
+     * Creates a near-real-time searcher over the live writer of an indexer. Documents added by the
+     * indexer become searchable after the next {@link #refresh()}, without a commit or reopening
+     * the whole index.
+     *
+     * @param indexer       the indexer whose writer should be searched
+     * @param refreshMillis interval of the background refresh, 0 to only refresh on demand
+     * @throws IOException when exception opening the reader
+     * @throws IllegalStateException when the indexer is sharded; use {@link ShardedTextFileSearcher}
+     */
+    public TextFileSearcher(TextFileIndexer indexer, long refreshMillis) throws IOException {
+        this(indexer.getIndexWriter(), refreshMillis, null);
+    }
+
+    /**
+     * Creates a near-real-time searcher over a live writer.
+     *
+     * @param writer        the writer whose documents should be searched
+     * @param refreshMillis interval of the background refresh, 0 to only refresh on demand
+     * @param executor      if not null, segments are searched in parallel on this executor
+     * @throws IOException when exception opening the reader
+     */
+    public TextFileSearcher(IndexWriter writer, long refreshMillis, ExecutorService executor) throws IOException {
+        this.searcherManager = new SearcherManager(writer, true, searcherFactory(executor));
+        if (refreshMillis > 0) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "searcher-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.refresher.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        refresh();
+                    } catch (IOException e) {
+                        LOG.warn("Searcher refresh failed", e);
+                    }
+                }
+            }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static SearcherFactory searcherFactory(final ExecutorService executor) {
+        if (executor == null) {
+            return null;
+        }
+        return new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+                return new IndexSearcher(reader, executor);
+            }
+        };
     }
 
-    public void search(String searchQuery) {
-        search(searchQuery, MAXIMUM_NUMBER_OF_HITS);
+    /**
+     * Opens a new searcher if the index changed. Queries running on the previous searcher are not
+     * blocked; if another thread is already refreshing this returns immediately.
+     *
+     * @return true if the searcher is current after this call
+     * @throws IOException when exception reopening the reader
+     */
+    public boolean refresh() throws IOException {
+        long start = System.nanoTime();
+        searcherManager.maybeRefresh();
+        metrics.recordTime("searcher.refresh", System.nanoTime() - start);
+        searcherLifetimeManager.prune(new SearcherLifetimeManager.PruneByAge(CURSOR_MAX_AGE_SECONDS));
+        return searcherManager.isSearcherCurrent();
     }
 
-    public void search(String searchQuery, int maxhits) {
+    /**
+     * Stops the background refresh and releases the reader.
+     *
+     * @throws IOException when exception closing the reader
+     */
+    public void close() throws IOException {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        searcherLifetimeManager.close();
+        searcherManager.close();
+    }
+
+    public SearchHits search(String searchQuery) {
+        return search(searchQuery, MAXIMUM_NUMBER_OF_HITS);
+    }
+
+    public SearchHits search(String searchQuery, int maxhits) {
+        return search(searchQuery, maxhits, DEFAULT_FIELDS);
+    }
+
+    /**
+     * Searches the {@code content} field.
+     *
+     * @param searchQuery query in {@link QueryParser} syntax
+     * @param maxhits     maximum number of results to return
+     * @param fields      stored fields to load for each hit; other fields are not decoded
+     * @return the top hits with the total number of matches
+     */
+    public SearchHits search(String searchQuery, int maxhits, String... fields) {
+        return searchPage(searchQuery, maxhits, null, fields);
+    }
+
+    /**
+     * Returns one page of results ordered by score, ties broken by doc id. Pass the
+     * {@link SearchHits#getCursor() cursor} of a page to get the next one; each page only collects
+     * {@code pageSize} hits no matter how deep it is. Pages of one cursor chain are served from the
+     * same index version as long as it is younger than {@value #CURSOR_MAX_AGE_SECONDS} seconds;
+     * after that the current version is used and results may shift.
+     *
+     * @param searchQuery query in {@link QueryParser} syntax
+     * @param pageSize    number of results per page
+     * @param cursor      the cursor returned with the previous page, or null for the first page
+     * @param fields      stored fields to load for each hit
+     * @return the page, with a cursor for the next page if there may be more results
+     * @throws IllegalArgumentException when the cursor is malformed, or is stale and points past
+     *                                  the end of the current index
+     */
+    public SearchHits searchPage(String searchQuery, int pageSize, String cursor, String... fields) {
+        SearchCursor after = (cursor == null) ? null : SearchCursor.decode(cursor);
         try {
-            QueryParser parser = new QueryParser("contents", analyzer);
+            long start = System.nanoTime();
+            QueryParser parser = new QueryParser("content", analyzer);
             Query query = parser.parse(searchQuery);
+            metrics.recordTime("searcher.query.parse", System.nanoTime() - start);
 
-            TopScoreDocCollector collector = TopScoreDocCollector.create(maxhits, true);
-            searcher.search(query, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-
-            for (ScoreDoc scoredoc : hits) {
-                //Retrieve the matched document and show relevant details
-                Document doc = searcher.doc(scoredoc.doc);
-                System.out.println(doc.get("path") + " score=" + scoredoc.score);
-                System.out.println("\nSender: " + doc.getField("sender"));
-                System.out.println("Subject: " + doc.getField("subject"));
-                System.out.println("Email file location: " + doc.getField("emailDoc"));
+            IndexSearcher searcher = (after == null) ? null : searcherLifetimeManager.acquire(after.getVersion());
+            boolean pinned = searcher != null;
+            if (!pinned) {
+                searcher = searcherManager.acquire();
             }
+            try {
+                if (after != null && after.toScoreDoc().doc >= searcher.getIndexReader().maxDoc()) {
+                    throw new IllegalArgumentException("stale cursor: " + cursor);
+                }
+                long version = searcherLifetimeManager.record(searcher);
+                if (resultCache != null) {
+                    SearchHits cached = resultCache.get(version, query, pageSize, cursor, fields);
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+
+                start = System.nanoTime();
+                // the executor, if any, is only used by the TopDocs overloads, not by search(Query, Collector)
+                TopDocs topDocs = searcher.searchAfter((after == null) ? null : after.toScoreDoc(), query, pageSize);
+                metrics.recordTime("searcher.search", System.nanoTime() - start);
+
+                String next = null;
+                if (pageSize > 0 && topDocs.scoreDocs.length == pageSize) {
+                    next = new SearchCursor(version, topDocs.scoreDocs[pageSize - 1]).encode();
+                }
+                start = System.nanoTime();
+                SearchHits searchHits = toSearchHits(searcher, topDocs, next, fields);
+                metrics.recordTime("searcher.fetch", System.nanoTime() - start);
+                if (resultCache != null) {
+                    resultCache.put(version, query, pageSize, cursor, fields, searchHits);
+                }
+                return searchHits;
+            } finally {
+                if (pinned) {
+                    searcherLifetimeManager.release(searcher);
+                } else {
+                    searcherManager.release(searcher);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void highlightSearch(String searchQuery) {
+    /**
+     * Enables caching of search results. The cache is cleared automatically whenever a refresh
+     * exposes a new index version.
+     *
+     * @param resultCache the cache to use, or null to disable caching
+     */
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Records query parse, search, stored field fetch, highlight, keyword-in-context and refresh
+     * times, and exposes the segment count of the current reader as the "searcher.segments" gauge.
+     *
+     * @param metrics the registry, or null to stop recording
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = (metrics == null) ? NoopMetricsRegistry.INSTANCE : metrics;
+        this.metrics.registerGauge("searcher.segments", new Gauge() {
+            public long getValue() {
+                try {
+                    IndexSearcher searcher = searcherManager.acquire();
+                    try {
+                        return searcher.getIndexReader().leaves().size();
+                    } finally {
+                        searcherManager.release(searcher);
+                    }
+                } catch (Exception e) {
+                    return -1;
+                }
+            }
+        });
+    }
+
+    private static SearchHits toSearchHits(IndexSearcher searcher, TopDocs topDocs, String cursor,
+                                           String... fields) throws IOException {
+        List<SearchResult> results = new ArrayList<SearchResult>(topDocs.scoreDocs.length);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            Map<String, String> values = Collections.emptyMap();
+            if (fields.length > 0) {
+                FieldSelectingVisitor visitor = new FieldSelectingVisitor(fields);
+                searcher.doc(scoreDoc.doc, visitor);
+                values = visitor.getValues();
+            }
+            results.add(new SearchResult(scoreDoc.doc, scoreDoc.score, values));
+        }
+        return new SearchHits(topDocs.totalHits, results, cursor);
+    }
+
+    public List<HighlightResult> highlightSearch(String searchQuery) {
+        return highlightSearch(searchQuery, MAXIMUM_NUMBER_OF_HITS, DEFAULT_FRAGMENT_COUNT, DEFAULT_FRAGMENT_SIZE);
+    }
+
+    /**
+     * Searches the {@code content} field and highlights the top hits. Fragments are built from the
+     * term vector offsets stored by {@link TextFileIndexer}, so the documents are not re-analyzed
+     * and the cost depends on {@code topK}, not on the size of the index.
+     *
+     * @param searchQuery   query in {@link QueryParser} syntax
+     * @param topK          number of hits to highlight
+     * @param fragmentCount maximum number of fragments per hit
+     * @param fragmentSize  approximate fragment length in characters, at least 18
+     * @return the highlighted hits in score order
+     */
+    public List<HighlightResult> highlightSearch(String searchQuery, int topK, int fragmentCount, int fragmentSize) {
         try {
-            QueryParser parser = new QueryParser("ncontent", analyzer);
+            long start = System.nanoTime();
+            QueryParser parser = new QueryParser("content", analyzer);
             Query query = parser.parse(searchQuery);
+            metrics.recordTime("searcher.query.parse", System.nanoTime() - start);
 
-            TopDocs hits = searcher.search(query, reader.maxDoc());
-            System.out.println(hits.totalHits);
-            SimpleHTMLFormatter htmlFormatter = new SimpleHTMLFormatter();
-            Highlighter highlighter = new Highlighter(htmlFormatter, new QueryScorer(query));
-            for (int i = 0; i < reader.maxDoc(); i++) {
-                int id = hits.scoreDocs[i].doc;
-                //Term vector
-                fragmentHighlighter(id, highlighter, "ncontent");
-                fragmentHighlighter(id, highlighter, "content");
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                IndexReader reader = searcher.getIndexReader();
+                start = System.nanoTime();
+                TopDocs hits = searcher.search(query, topK);
+                metrics.recordTime("searcher.search", System.nanoTime() - start);
+                FieldQuery fieldQuery = highlighter.getFieldQuery(query, reader);
+
+                List<HighlightResult> results = new ArrayList<HighlightResult>(hits.scoreDocs.length);
+                for (ScoreDoc scoreDoc : hits.scoreDocs) {
+                    start = System.nanoTime();
+                    String[] fragments = highlighter.getBestFragments(fieldQuery, reader, scoreDoc.doc, "content",
+                            fragmentSize, fragmentCount);
+                    metrics.recordTime("searcher.highlight", System.nanoTime() - start);
+                    start = System.nanoTime();
+                    FieldSelectingVisitor visitor = new FieldSelectingVisitor("path");
+                    searcher.doc(scoreDoc.doc, visitor);
+                    metrics.recordTime("searcher.fetch", System.nanoTime() - start);
+                    results.add(new HighlightResult(scoreDoc.doc, scoreDoc.score, visitor.getValues().get("path"),
+                            (fragments == null) ? Collections.<String>emptyList() : Arrays.asList(fragments)));
+                }
+                return results;
+            } finally {
+                searcherManager.release(searcher);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -94,58 +384,154 @@ public class TextFileSearcher {
         }
     }
 
-    private void fragmentHighlighter(int hitId, Highlighter highlighter, String fieldname) throws IOException, InvalidTokenOffsetsException {
-        Document doc = searcher.doc(hitId);
-        String text = doc.get(fieldname);
-        TokenStream tokenStream = TokenSources.getAnyTokenStream(searcher.getIndexReader(), hitId, fieldname, analyzer);
-        TextFragment[] frag = highlighter.getBestTextFragments(tokenStream, text, false, 4);
-        for (int j = 0; j < frag.length; j++) {
-            if ((frag[j] != null) && (frag[j].getScore() > 0)) {
-                System.out.println((frag[j].toString()));
-            }
-        }
+    public List<KeywordInContext> searchSpan(String text, int hits) throws IOException {
+        return searchSpan(text, hits, DEFAULT_SPAN_WINDOW);
     }
 
-    public void searchSpan(String text, int hits) throws IOException {
-        // Do a search using SpanQuery
-        SpanTermQuery spanQuery = new SpanTermQuery(new Term("content", text));
-        TopDocs results = searcher.search(spanQuery, hits);
-        for (int i = 0; i < results.scoreDocs.length; i++) {
-            ScoreDoc scoreDoc = results.scoreDocs[i];
-            System.out.println("Score Doc: " + scoreDoc);
+    /**
+     * Keyword-in-context search: finds occurrences of a term in the {@code content} field and
+     * returns each with up to {@code window} words on either side. Spans are iterated per segment;
+     * the character offsets of a match are looked up by seeking its term in the document's term
+     * vector, and the surrounding words are cut from the stored text, so the work per match does
+     * not depend on the size of the document's vocabulary.
+     *
+     * @param text        the term to look for
+     * @param maxSnippets maximum number of snippets to return
+     * @param window      number of words of context on each side of the match
+     * @return the snippets in index order
+     * @throws IOException when exception reading the index
+     */
+    public List<KeywordInContext> searchSpan(String text, int maxSnippets, int window) throws IOException {
+        long start = System.nanoTime();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searchSpan(searcher, text.toLowerCase(Locale.ROOT), maxSnippets, window);
+        } finally {
+            searcherManager.release(searcher);
+            metrics.recordTime("searcher.span", System.nanoTime() - start);
         }
+    }
 
+    private List<KeywordInContext> searchSpan(IndexSearcher searcher, String text, int maxSnippets, int window)
+            throws IOException {
+        Term term = new Term("content", text);
+        SpanTermQuery spanQuery = new SpanTermQuery(term);
         IndexReader reader = searcher.getIndexReader();
-        //this is not the best way of doing this, but it works for the example.
-        // See http://www.slideshare.net/lucenerevolution/is-your-index-reader-really-atomic-or-maybe-slow for higher performance approaches
-        AtomicReader wrapper = SlowCompositeReaderWrapper.wrap(reader);
         Map<Term, TermContext> termContexts = new HashMap<Term, TermContext>();
-        Spans spans = spanQuery.getSpans(wrapper.getContext(), new Bits.MatchAllBits(reader.numDocs()), termContexts);
-        int window = 2;//get the words within two of the match
-        while (spans.next() == true) {
-            Map<Integer, String> entries = new TreeMap<Integer, String>();
-            System.out.println("Doc: " + spans.doc() + " Start: " + spans.start() + " End: " + spans.end());
-            int start = spans.start() - window;
-            int end = spans.end() + window;
-            Terms content = reader.getTermVector(spans.doc(), "content");
-            TermsEnum termsEnum = content.iterator(null);
-            BytesRef term;
-            while ((term = termsEnum.next()) != null) {
-                //could store the BytesRef here, but String is easier for this example
-                String s = new String(term.bytes, term.offset, term.length);
-                DocsAndPositionsEnum positionsEnum = termsEnum.docsAndPositions(null, null);
-                if (positionsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
-                    int i = 0;
-                    int position = -1;
-                    while (i < positionsEnum.freq() && (position = positionsEnum.nextPosition()) != -1) {
-                        if (position >= start && position <= end) {
-                            entries.put(position, s);
-                        }
-                        i++;
-                    }
+        termContexts.put(term, TermContext.build(reader.getContext(), term));
+
+        List<KeywordInContext> snippets = new ArrayList<KeywordInContext>();
+        for (AtomicReaderContext leaf : reader.leaves()) {
+            AtomicReader leafReader = leaf.reader();
+            Spans spans = spanQuery.getSpans(leaf, leafReader.getLiveDocs(), termContexts);
+
+            int currentDoc = -1;
+            String content = null;
+            String path = null;
+            Occurrences occurrences = null;
+            while (snippets.size() < maxSnippets && spans.next()) {
+                if (spans.doc() != currentDoc) {
+                    currentDoc = spans.doc();
+                    FieldSelectingVisitor visitor = new FieldSelectingVisitor("content", "path");
+                    leafReader.document(currentDoc, visitor);
+                    content = visitor.getValues().get("content");
+                    path = visitor.getValues().get("path");
+                    occurrences = termVectorOccurrences(leafReader, currentDoc, term);
                 }
+                if (content == null || occurrences == null || !occurrences.advanceTo(spans.start())) {
+                    continue;
+                }
+
+                int startOffset = occurrences.startOffset();
+                int endOffset = occurrences.endOffset();
+                snippets.add(new KeywordInContext(leaf.docBase + currentDoc, path, spans.start(),
+                        wordsBefore(content, startOffset, window),
+                        content.substring(startOffset, endOffset),
+                        wordsAfter(content, endOffset, window)));
+            }
+            if (snippets.size() >= maxSnippets) {
+                break;
             }
-            System.out.println("Entries:" + entries);
+        }
+        return snippets;
+    }
+
+    /**
+     * Looks up the term vector postings of {@code term} in {@code doc}, or returns null if the
+     * document has no term vector with offsets for that term. This is a single seek, not a scan
+     * of the vector.
+     */
+    private static Occurrences termVectorOccurrences(AtomicReader leafReader, int doc, Term term) throws IOException {
+        Terms vector = leafReader.getTermVector(doc, term.field());
+        if (vector == null || !vector.hasOffsets()) {
+            return null;
+        }
+        TermsEnum termsEnum = vector.iterator(null);
+        if (!termsEnum.seekExact(term.bytes())) {
+            return null;
+        }
+        DocsAndPositionsEnum positions = termsEnum.docsAndPositions(null, null, DocsAndPositionsEnum.FLAG_OFFSETS);
+        if (positions == null || positions.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
+            return null;
+        }
+        return new Occurrences(positions);
+    }
+
+    private static String wordsBefore(String text, int offset, int words) {
+        int start = offset;
+        for (int i = 0; i < words && start > 0; i++) {
+            while (start > 0 && !Character.isLetterOrDigit(text.charAt(start - 1))) {
+                start--;
+            }
+            while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+                start--;
+            }
+        }
+        return text.substring(start, offset).trim();
+    }
+
+    private static String wordsAfter(String text, int offset, int words) {
+        int end = offset;
+        for (int i = 0; i < words && end < text.length(); i++) {
+            while (end < text.length() && !Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+        }
+        return text.substring(offset, end).trim();
+    }
+
+    /**
+     * Forward-only cursor over the positions and offsets of one term in one document's term
+     * vector. Span matches arrive in increasing position order, so it never needs to rewind.
+     */
+    private static class Occurrences {
+        private final DocsAndPositionsEnum positions;
+        private final int freq;
+        private int read;
+        private int position = -1;
+
+        Occurrences(DocsAndPositionsEnum positions) throws IOException {
+            this.positions = positions;
+            this.freq = positions.freq();
+        }
+
+        boolean advanceTo(int target) throws IOException {
+            while (position < target && read < freq) {
+                position = positions.nextPosition();
+                read++;
+            }
+            return position == target;
+        }
+
+        int startOffset() throws IOException {
+            return positions.startOffset();
+        }
+
+        int endOffset() throws IOException {
+            return positions.endOffset();
         }
     }
 }
@@ -0,0 +1,9 @@
+package com.library.api.search.metrics;
+
+/**
+ * A value sampled on demand, such as the number of open connections.
+ */
+public interface Gauge {
+
+    long getValue();
+}
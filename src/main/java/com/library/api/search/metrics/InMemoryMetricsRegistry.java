@@ -0,0 +1,89 @@
+package com.library.api.search.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps every timer and histogram in memory, for tests, benchmarks and simple diagnostics
+ * endpoints. Times are recorded in nanoseconds.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+    public void recordTime(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    public void recordValue(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    public void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    private Histogram histogram(String name) {
+        Histogram h = histograms.get(name);
+        if (h == null) {
+            Histogram created = new Histogram();
+            h = histograms.putIfAbsent(name, created);
+            if (h == null) {
+                h = created;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return the timer or histogram, or null if nothing was recorded under that name
+     */
+    public Histogram getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * @return the current value of the gauge, or null if no gauge has that name
+     */
+    public Long getGaugeValue(String name) {
+        Gauge gauge = gauges.get(name);
+        return (gauge == null) ? null : gauge.getValue();
+    }
+
+    /**
+     * @return all timers and histograms by name, sorted
+     */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<String, Histogram>(histograms);
+    }
+
+    /**
+     * @return the current value of every gauge by name, sorted
+     */
+    public Map<String, Long> getGaugeValues() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            values.put(e.getKey(), e.getValue().getValue());
+        }
+        return values;
+    }
+
+    public void clear() {
+        histograms.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> e : getHistograms().entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> e : getGaugeValues().entrySet()) {
+            sb.append(e.getKey()).append(" = ").append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
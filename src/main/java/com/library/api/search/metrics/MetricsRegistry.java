@@ -0,0 +1,28 @@
+package com.library.api.search.metrics;
+
+/**
+ * Receives the timings and values recorded by the indexer, the searchers and the Google client.
+ * Implementations bridge to a monitoring system; they are called on hot paths from many threads,
+ * so they must be thread-safe and cheap. Names are dot separated, e.g. "searcher.search" or
+ * "google.http.response.web".
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name  the timer
+     * @param nanos the elapsed time of one operation
+     */
+    void recordTime(String name, long nanos);
+
+    /**
+     * @param name  the histogram
+     * @param value one observed value, e.g. a document size in bytes
+     */
+    void recordValue(String name, long value);
+
+    /**
+     * Registers a value that is read when the registry is polled rather than recorded as it
+     * changes. A later gauge with the same name replaces the earlier one.
+     */
+    void registerGauge(String name, Gauge gauge);
+}
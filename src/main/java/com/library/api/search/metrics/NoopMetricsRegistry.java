@@ -0,0 +1,21 @@
+package com.library.api.search.metrics;
+
+/**
+ * Discards everything; the default when no registry is configured.
+ */
+public final class NoopMetricsRegistry implements MetricsRegistry {
+
+    public static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+
+    private NoopMetricsRegistry() {
+    }
+
+    public void recordTime(String name, long nanos) {
+    }
+
+    public void recordValue(String name, long value) {
+    }
+
+    public void registerGauge(String name, Gauge gauge) {
+    }
+}
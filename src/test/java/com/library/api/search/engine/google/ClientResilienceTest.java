@@ -0,0 +1,270 @@
+package com.library.api.search.engine.google;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises the retry, circuit breaker, hedging and rate limiting of {@link Client} against a
+ * local HTTP server whose answers are scripted per test.
+ */
+public class ClientResilienceTest {
+
+    private static final byte[] EMPTY_RESULTS =
+            "{\"responseData\":{\"results\":[]},\"responseDetails\":null,\"responseStatus\":200}"
+                    .getBytes(Charset.forName("UTF-8"));
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String endpoint;
+    private Client client;
+
+    /** Answers for the next requests, in order; once empty every request gets a 200. */
+    private final BlockingQueue<Answer> answers = new LinkedBlockingQueue<Answer>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<Long> arrivals = Collections.synchronizedList(new ArrayList<Long>());
+
+    private interface Answer {
+        void respond(HttpExchange exchange) throws IOException;
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ajax/services/search/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                arrivals.add(System.nanoTime());
+                requests.incrementAndGet();
+                Answer answer = answers.poll();
+                try {
+                    if (answer == null) {
+                        ok(exchange);
+                    } else {
+                        answer.respond(exchange);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        // a pool, so a slow answer does not hold up the others
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort() + "/ajax/services/search/web";
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void retriesThrottledAndServerErrors() {
+        answers.add(status(429));
+        answers.add(status(503));
+        client = Client.builder().retries(3, 1, 5).build();
+
+        search("lucene");
+
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void connectionResetIsRetriedOnlyByTheRetryPolicy() {
+        for (int i = 0; i < 20; i++) {
+            answers.add(HANG_UP);
+        }
+        client = Client.builder().retries(3, 1, 5).build();
+
+        try {
+            search("lucene");
+            fail("expected the reset to be reported");
+        } catch (RuntimeException ex) {
+            // three attempts, none of them retried again inside HttpClient
+        }
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        answers.add(status(404));
+        client = Client.builder().retries(3, 1, 5).build();
+
+        try {
+            search("lucene");
+            fail("expected the 404 to be reported");
+        } catch (UnexpectedStatusException ex) {
+            assertEquals(404, ex.getStatusCode());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void openCircuitFailsFastThenLetsOneTrialThrough() throws Exception {
+        answers.add(status(503));
+        answers.add(status(503));
+        client = Client.builder().retries(1, 1, 1).circuitBreaker(2, 200).build();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                search("failing " + i);
+                fail("expected a 503");
+            } catch (UnexpectedStatusException ex) {
+                assertEquals(503, ex.getStatusCode());
+            }
+        }
+        try {
+            search("rejected");
+            fail("expected the circuit to be open");
+        } catch (CircuitOpenException ex) {
+            // failed fast
+        }
+        assertEquals(2, requests.get());
+
+        Thread.sleep(250);
+        final CountDownLatch trialArrived = new CountDownLatch(1);
+        final CountDownLatch releaseTrial = new CountDownLatch(1);
+        answers.add(new Answer() {
+            public void respond(HttpExchange exchange) throws IOException {
+                trialArrived.countDown();
+                try {
+                    releaseTrial.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                ok(exchange);
+            }
+        });
+        final AtomicReference<Throwable> trialFailure = new AtomicReference<Throwable>();
+        Thread trial = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    search("trial");
+                } catch (Throwable t) {
+                    trialFailure.set(t);
+                }
+            }
+        });
+        trial.start();
+        assertTrue(trialArrived.await(5, TimeUnit.SECONDS));
+
+        try {
+            search("while half-open");
+            fail("expected only the trial request to be let through");
+        } catch (CircuitOpenException ex) {
+            // the trial holds the only slot
+        }
+        releaseTrial.countDown();
+        trial.join(5000);
+        assertEquals(null, trialFailure.get());
+
+        search("after the trial");
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void hedgeWinsAndSlowRequestIsCancelled() throws Exception {
+        final CountDownLatch loserCancelled = new CountDownLatch(1);
+        answers.add(new Answer() {
+            public void respond(HttpExchange exchange) throws IOException {
+                // trickle a body that never ends, until the client hangs up
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                byte[] chunk = new byte[1024];
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        body.write(chunk);
+                        body.flush();
+                        Thread.sleep(10);
+                    }
+                } catch (IOException ex) {
+                    loserCancelled.countDown();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        client = Client.builder().retries(1, 1, 1).hedgeAfter(50).build();
+
+        long start = System.nanoTime();
+        search("slow");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(2, requests.get());
+        assertTrue("answered by the hedge after " + elapsedMillis + " ms", elapsedMillis < 2000);
+        assertTrue("slow request was not cancelled", loserCancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rateLimitSpacesRequests() {
+        client = Client.builder().rateLimit(10, 1).build();
+
+        for (int i = 0; i < 4; i++) {
+            search("query " + i);
+        }
+
+        assertEquals(4, arrivals.size());
+        for (int i = 1; i < arrivals.size(); i++) {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(arrivals.get(i) - arrivals.get(i - 1));
+            // 10 per second is one every 100 ms; leave room for timer granularity
+            assertTrue("requests " + (i - 1) + " and " + i + " were " + gapMillis + " ms apart", gapMillis >= 80);
+        }
+    }
+
+    private Response search(String query) {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("q", query);
+        return client.sendSearchRequest(endpoint, params);
+    }
+
+    /** Drops the connection without answering. */
+    private static final Answer HANG_UP = new Answer() {
+        public void respond(HttpExchange exchange) throws IOException {
+            throw new IOException("connection dropped by test");
+        }
+    };
+
+    private static Answer status(final int code) {
+        return new Answer() {
+            public void respond(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(code, -1);
+            }
+        };
+    }
+
+    private static void ok(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, EMPTY_RESULTS.length);
+        exchange.getResponseBody().write(EMPTY_RESULTS);
+    }
+}